@@ -17,311 +17,359 @@
 
 package agonia;
 
-import java.util.Arrays;
-import java.util.Scanner;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 
 public class Agonia {
-	static final int NUM_PLAYERS = 2;
-
-	public static void main(String[] args) throws IOException {
+	/**
+	 * Play a game on the console. The only, optional, argument is a file
+	 * to save the game in after every turn; if it exists, the game saved
+	 * in it is resumed.
+	 */
+	public static void main(String[] args) {
 		PlayerHuman playerHuman = new PlayerHuman();
-		PlayerCPU playerCPU = new PlayerCPU();
-		Player[] players = {playerHuman, playerCPU};
-		int pointsLimit;
-		int round = 1;
+		playerHuman.out.clear();
+		playGame(playerHuman,
+		         args.length > 0 ? Path.of(args[0]) : null);
+	}
 
-		clearScreen();
-		System.out.println(getInfo());
+	public static void playGame(PlayerHuman playerHuman) {
+		playGame(playerHuman, null);
+	}
 
-		pointsLimit = getPointsLimit();
-		whoIsFirst(playerHuman, playerCPU, players);
+	/**
+	 * Play a whole game between a human and one or more CPU players,
+	 * talking to the human through his player's streams.
+	 *
+	 * With a checkpoint file the game is saved there after every turn, so
+	 * it survives a crash, and the file is removed when the game ends. If
+	 * the file already exists the game saved in it goes on.
+	 *
+	 * @param playerHuman human player
+	 * @param checkpoint file to save the game in, null for none
+	 * @return nothing
+	 * @throws java.util.NoSuchElementException if the human's input is
+	 *         closed before the game ends
+	 * @throws UncheckedIOException if the checkpoint cannot be read or
+	 *         written
+	 */
+	public static void playGame(PlayerHuman playerHuman, Path checkpoint) {
+		Renderer out = playerHuman.out;
+		Player[] players;
+		GameEngine engine;
 
-		do {
-			System.out.println("*****************************" +
-					   "ROUND " + round +
-					   "*******************************\n");
+		out.println(getInfo());
 
-			Deck deck = new Deck();
-			int plCount = round - 1;              // player index
-			int cp = plCount % NUM_PLAYERS;       // current player
-			int np = (plCount + 1) % NUM_PLAYERS; // next player
+		if (checkpoint != null && Files.exists(checkpoint)) {
+			engine = loadGame(checkpoint, playerHuman);
+			out.printf("Game resumed at round %d.%n%n", engine.round());
+		} else {
+			int pointsLimit = getPointsLimit(playerHuman);
+			players = newTable(playerHuman, getNumCPUs(playerHuman));
+			whoIsFirst(playerHuman, players);
+			engine = new GameEngine(players, pointsLimit, out,
+			                        System.nanoTime());
+		}
 
-			deck.shuffle();
-			deck.dealCards(playerHuman, playerCPU);
+		do {
+			if (! engine.isPlayingRound()) {
+				out.println("*****************************" +
+					    "ROUND " + (engine.round() + 1) +
+					    "*******************************\n");
+				engine.startRound();
+			}
+			do {
+				if (checkpoint != null)
+					saveGame(checkpoint, engine, playerHuman);
+			} while (! engine.playTurn());
+
+			for (Player i = engine.roundWinner().next;
+			     i != engine.roundWinner(); i = i.next)
+				out.printf("%d points to %s.%n", i.cards.value(),
+				           i == playerHuman ? "you" : i.name);
+			engine.endRound();
+			displayScore(out, playerHuman, engine.pointsLimit());
+		} while (! engine.isOver());
+
+		if (engine.winner() == playerHuman)
+			out.println("Congratulations! " +
+			            "You won the game!!!");
+		else
+			out.printf("%s won the game!%n", engine.winner().name);
+		out.flush();
 
-			if (players[cp].playFirstCard(deck, players[np]))
-				plCount++;
+		if (checkpoint != null) {
+			try {
+				Files.deleteIfExists(checkpoint);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
 
-			do {
-				cp = plCount % NUM_PLAYERS;
-				np = (plCount + 1) % NUM_PLAYERS;
+	/**
+	 * Seat a human and a number of CPU players, the human first. CPU
+	 * players are named after their number if there are more than one.
+	 *
+	 * @param playerHuman human player
+	 * @param numCPUs number of CPU players
+	 * @return the players in seat order
+	 */
+	private static Player[] newTable(PlayerHuman playerHuman, int numCPUs) {
+		Player[] players = new Player[numCPUs + 1];
+
+		players[0] = playerHuman;
+		for (int i = 1; i <= numCPUs; i++) {
+			PlayerCPU playerCPU = new PlayerCPU();
+			playerCPU.setTracking(true);
+			players[i] = playerCPU;
+			players[i].out = playerHuman.out;
+			if (numCPUs > 1)
+				players[i].name = "CPU " + i;
+		}
+		return players;
+	}
 
-				players[cp].play(deck, players[np]);
-				plCount++;
-			} while (! players[cp].hasWon());
+	/**
+	 * Save a game to a file, replacing it as a whole so that a crash
+	 * never leaves half a checkpoint behind.
+	 *
+	 * @param file checkpoint file
+	 * @param engine the game
+	 * @param playerHuman the human player of the game
+	 * @return nothing
+	 */
+	static void saveGame(Path file, GameEngine engine,
+	                     PlayerHuman playerHuman) {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream dst = new DataOutputStream(
+		             new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+			// the table, the engine only knows Players
+			dst.writeByte(engine.numPlayers());
+			dst.writeByte(playerHuman.seat);
+			engine.save(dst);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+			           StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 
-			int points = players[np].addPoints();
-			if (players[np] instanceof PlayerHuman)
-				System.out.println(points + " points to you.");
-			else
-				System.out.println(points + " points to CPU.");
-			displayScore(playerHuman, playerCPU, pointsLimit);
-			round++;
-		} while (playerHuman.points < pointsLimit
-			 && playerCPU.points < pointsLimit);
-
-		if (playerHuman.points > playerCPU.points)
-			System.out.println("CPU won the game!");
-		else
-			System.out.println("Congratulations! " +
-			                   "You won the game!!!");
+	/**
+	 * Load a game saved by saveGame(), seating CPU players around the
+	 * human as they were.
+	 *
+	 * @param file checkpoint file
+	 * @param playerHuman human player
+	 * @return the game
+	 */
+	static GameEngine loadGame(Path file, PlayerHuman playerHuman) {
+		try (DataInputStream src = new DataInputStream(
+		             new BufferedInputStream(Files.newInputStream(file)))) {
+			int numPlayers = src.readUnsignedByte();
+			int seat = src.readUnsignedByte();
+			if (numPlayers < GameEngine.MIN_PLAYERS
+			|| numPlayers > GameEngine.MAX_PLAYERS
+			|| seat >= numPlayers)
+				throw new IOException("Invalid checkpoint");
+
+			// the human comes first, rotate him down to his seat
+			Player[] players = newTable(playerHuman, numPlayers - 1);
+			for (int i = 0; i < (numPlayers - seat) % numPlayers; i++)
+				rotate(players);
+			return GameEngine.restore(src, players, playerHuman.out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	/**
 	 * Prompt user to enter an integer and validate input.
 	 *
+	 * @param playerHuman human player to prompt
 	 * @return points limit, positive integer
 	 */
-	private static int getPointsLimit() {
-		Scanner sc = new Scanner(System.in);
+	private static int getPointsLimit(PlayerHuman playerHuman) {
 		int i;
 
 		do {
-			System.out.print("Set the points limit: ");
+			playerHuman.out.print("Set the points limit: ");
 			try {
-				i = Integer.parseInt(sc.nextLine());
+				i = Integer.parseInt(playerHuman.readLine());
 			} catch (NumberFormatException e) {
 				i = -1;
 			}
 		} while (i < 1);
 
-		System.out.printf("Game will end at %d points.%n%n", i);
+		playerHuman.out.printf("Game will end at %d points.%n%n", i);
+		return i;
+	}
+
+	/**
+	 * Prompt user for the number of CPU players, one if he just presses
+	 * enter.
+	 *
+	 * @param playerHuman human player to prompt
+	 * @return number of CPU players, 1 to GameEngine.MAX_PLAYERS - 1
+	 */
+	private static int getNumCPUs(PlayerHuman playerHuman) {
+		int max = GameEngine.MAX_PLAYERS - 1;
+		int i;
+
+		do {
+			playerHuman.out.printf("Number of CPU players (1-%d): ", max);
+			String answer = playerHuman.readLine().trim();
+			try {
+				i = answer.isEmpty() ? 1 : Integer.parseInt(answer);
+			} catch (NumberFormatException e) {
+				i = -1;
+			}
+		} while (i < 1 || i > max);
+
 		return i;
 	}
 
 	/**
-	 * Ask user if he wants to play second and if so, swap players in
-	 * players array.
+	 * Ask user if he wants to play first and if not, move him to the last
+	 * seat.
 	 *
 	 * The first index in the players array plays first.
 	 * By default the program assumes that human player plays first.
 	 *
 	 * @param playerHuman human player
-	 * @param playerCPU CPU player
-	 * @param players an array of all players
+	 * @param players an array of all players, the human first
 	 * @return nothing
 	 */
-	private static void whoIsFirst(Player playerHuman,
-		                      Player playerCPU,
+	private static void whoIsFirst(PlayerHuman playerHuman,
 		                      Player[] players) {
-		Scanner sc = new Scanner(System.in);
+		Renderer out = playerHuman.out;
 
-		System.out.print("Would you like to play first? (y/n) ");
-		String answer = sc.nextLine().toLowerCase().trim();
+		out.print("Would you like to play first? (y/n) ");
+		String answer = playerHuman.readLine().toLowerCase().trim();
 		if (answer.equals("y") || answer.equals("yes")) {
-			System.out.println("Okay, you play first.\n");
+			out.println("Okay, you play first.\n");
 		} else {
-			players[0] = playerCPU;
-			players[1] = playerHuman;
-			System.out.println("Okay, I play first.\n");
+			rotate(players);
+			if (players.length == 2)
+				out.println("Okay, I play first.\n");
+			else
+				out.println("Okay, you play last.\n");
 		}
 	}
 
 	/**
-	 * Sort cards by num and suit.
-	 *
-	 * First create 4 CardArrays each holding only same suit cards, and
-	 * suitably distribute all cards to them depending on their suit.
-	 * Then clear cards array and call sortSameSuitCards() 4 times - one
-	 * for each cardArray - to sort same suit cards by num (value) and
-	 * store them back to cards array properly sorted.
+	 * Move every player one seat down, the first one to the last seat.
 	 *
-	 * @param cards cards to be sorted
+	 * @param players an array of all players
 	 * @return nothing
 	 */
-	public static void sortCards(CardArray cards) {
-		CardArray DCards = new CardArray(); // diamond cards
-		CardArray HCards = new CardArray(); // heart cards
-		CardArray SCards = new CardArray(); // ...
-		CardArray CCards = new CardArray();
-
-		for (Card i : cards) {
-			switch (i.suit()) {
-			case DIAMONDS:
-				DCards.add(i);
-				break;
-			case HEARTS:
-				HCards.add(i);
-				break;
-			case SPADES:
-				SCards.add(i);
-				break;
-			case CLUBS:
-				CCards.add(i);
-				break;
-			}
-		}
-
-		cards.clear();
-		sortSameSuitCards(cards, DCards);
-		sortSameSuitCards(cards, HCards);
-		sortSameSuitCards(cards, SCards);
-		sortSameSuitCards(cards, CCards);
+	private static void rotate(Player[] players) {
+		Player first = players[0];
+		System.arraycopy(players, 1, players, 0, players.length - 1);
+		players[players.length - 1] = first;
 	}
 
 	/**
-	 * Sort cards of same suit by num.
-	 *
-	 * Create an array of ints and store to it the num of each card.
-	 * Sort the int array using Arrays.sort() and then append cards to the
-	 * cards array in right order by corresponding each num to its card.
-	 *
-	 * Note: nums would all be unique because we deal with same suit cards.
+	 * Search for a card in a hand by description, see CardNames.
 	 *
-	 * @param cards original unsorted cards, result will be stored here
-	 * @param suitCards cards to be sorted
-	 * @return nothing
+	 * @param cardName card description, in any case
+	 * @param cards the hand
+	 * @return the card if found, else null
 	 */
-	private static void sortSameSuitCards(CardArray cards,
-	                                     CardArray suitCards) {
-		int[] cardsNums = new int[suitCards.size()];
-		int y = 0; // index
-
-		for (Card i : suitCards) {
-			cardsNums[y] = i.num();
-			y++;
-		}
-		Arrays.sort(cardsNums);
-
-		for (int n : cardsNums) {
-			for (Card i : suitCards) {
-				if (i.num() == n)
-					cards.add(i);
-			}
-		}
+	public static Card findCard(String cardName, Hand cards) {
+		Card card = CardNames.find(cardName);
+		if (card != null && cards.contains(card))
+			return card;
+		return null;
 	}
 
 	/**
-	 * Search for a card in a cards array by description.
+	 * Return the suit that appears most times in a set of cards.
 	 *
-	 * @param cardName card description
-	 * @param cards the cards array
-	 * @return the card if found, else null
+	 * On a tie the suit that comes first in Diamonds, Hearts, Spades,
+	 * Clubs order wins.
+	 *
+	 * @param cards mask of the cards to proccess, as kept by Hand
+	 * @return the dominant suit
 	 */
-	public static Card findCard(String cardName, CardArray cards) {
-		for (Card i : cards) {
-			if (i.shortdesc().toLowerCase().equals(cardName)
-			|| i.longdesc().toLowerCase().equals(cardName))
-				return i;
-		}
-		return null;
+	public static Card.Suit findDominantSuit(long cards) {
+		return Card.intToSuit(Hand.dominantSuit(cards));
 	}
 
 	/**
-	 * Return the suit that appears most times in an array of cards.
+	 * Return the suit that appears most times in a hand, read from the
+	 * counts the hand keeps.
 	 *
-	 * @param cards the card array to proccess
+	 * @param hand the hand
 	 * @return the dominant suit
 	 */
-	public static Card.Suit findDominantSuit(CardArray cards) {
-		int diamonds = 0, hearts = 0, spades = 0, clubs = 0;
-
-		for (Card i : cards) {
-			switch(i.suit()) {
-			case DIAMONDS:
-				diamonds++;
-				break;
-			case HEARTS:
-				hearts++;
-				break;
-			case SPADES:
-				spades++;
-				break;
-			case CLUBS:
-				clubs++;
-				break;
-			}
-		}
-
-		int max = diamonds;
-		int[] results = new int[] {hearts, spades, clubs};
-
-		for (int i : results)
-			if (i > max)
-				max = i;
-
-		if (max == diamonds)
-			return Card.Suit.DIAMONDS;
-		if (max == hearts)
-			return Card.Suit.HEARTS;
-		if (max == spades)
-			return Card.Suit.SPADES;
-		return Card.Suit.CLUBS;
+	public static Card.Suit findDominantSuit(Hand hand) {
+		return Card.intToSuit(hand.dominantSuit());
 	}
 
 	/**
-	 * Display the shortdesc of all cards on the screen, formated.
+	 * Display the shortdesc of all cards of a hand, formated. A hand is
+	 * always sorted by suit and num, so it is displayed as is.
 	 *
-	 * @param cards cards to be displayed
+	 * @param out renderer to display on
+	 * @param cards hand to be displayed
 	 * @return nothing
 	 */
-	public static void displayCards(CardArray cards) {
-		if (cards.isEmpty()) {
-			System.out.println("[]");
-			return;
-		}
-
-		sortCards(cards);
-		System.out.print("[");
-		for (Card i : cards)
-			System.out.printf("'%s', ", i.shortdesc());
-		System.out.print("\b\b]");
+	public static void displayCards(Renderer out, Hand cards) {
+		out.cards(cards.mask());
 	}
 
 	/**
 	 * Display the current status of the table on the screen.
-	 * It displays human's cards, cpu's number of cards and the down card.
+	 * It displays the others' number of cards, human's cards and the down
+	 * card.
 	 *
+	 * @param out renderer to display on
 	 * @param playerHuman human player
-	 * @param playerCPU CPU player
 	 * @param downcard the shown card
 	 * @return nothing
 	 */
-	public static void displayTable(Player playerHuman,
-	                                Player playerCPU,
+	public static void displayTable(Renderer out,
+	                                Player playerHuman,
 	                                Card downcard) {
-		System.out.printf("CPU: %d more cards%n", playerCPU.cards.size());
-		System.out.print("Your cards: ");
-		displayCards(playerHuman.cards);
-		System.out.printf("%nDown card: %s%n%n", downcard.shortdesc());
+		for (Player i = playerHuman.next; i != playerHuman; i = i.next)
+			out.printf("%s: %d more cards%n", i.name, i.cards.size());
+		out.print("Your cards: ");
+		displayCards(out, playerHuman.cards);
+		out.printf("%nDown card: %s%n%n", downcard.shortdesc());
 	}
 
 	/**
 	 * Display score of each player and points limit.
 	 *
+	 * @param out renderer to display on
+	 * @param playerHuman human player, the others follow in seat order
+	 * @param limit points limit
 	 * @return nothing
 	 */
-	private static void displayScore(PlayerHuman playerHuman,
-		                         PlayerCPU playerCPU,
+	private static void displayScore(Renderer out,
+		                         PlayerHuman playerHuman,
 		                         int limit) {
-		System.out.printf("%n+---------------------%n" +
-		                  "|Score (limit: %d)    %n" +
-		                  "|---------------------%n" +
-		                  "|Human:  %d           %n" +
-		                  "|CPU:    %d           %n" +
-		                  "+---------------------%n%n",
-		                  limit, playerHuman.points, playerCPU.points);
-	}
-
-	private static void clearScreen() throws IOException {
-		String os = System.getProperty("os.name");
-
-		if (os.contains("Windows"))
-		    Runtime.getRuntime().exec("cls");
-		else if (os.contains("Linux"))
-		    Runtime.getRuntime().exec("clear");
+		out.printf("%n+---------------------%n" +
+		           "|Score (limit: %d)    %n" +
+		           "|---------------------%n" +
+		           "|Human:  %d           %n",
+		           limit, playerHuman.points);
+		for (Player i = playerHuman.next; i != playerHuman; i = i.next)
+			out.printf("|%-8s%d           %n", i.name + ":", i.points);
+		out.printf("+---------------------%n%n");
 	}
 
 	private static String getInfo() {
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.io.PrintStream;
+
+
+/**
+ * Renders on an ANSI terminal: red and black suits, a cleared screen and
+ * a short spinning effect while the deck is shuffled for a new round.
+ *
+ * Like LineRenderer, text is buffered and written on flush().
+ */
+public class AnsiRenderer extends LineRenderer {
+	//------------------Constant definitions----------------------
+	static final String RED = "\u001b[31m";
+	static final String RESET = "\u001b[0m";
+	static final String CLEAR = "\u001b[2J\u001b[H";
+	static final String SPIN = "|/-\\";
+	static final int SPIN_FRAMES = 12;
+	static final long SPIN_FRAME_MILLIS = 25;
+
+	//--------------------Constructor-----------------------------
+
+	public AnsiRenderer(PrintStream out) {
+		super(out);
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	/**
+	 * Display a card, Diamonds and Hearts in red.
+	 *
+	 * @param card the card
+	 * @return nothing
+	 */
+	protected void card(Card card) {
+		Card.Suit suit = card.suit();
+		if (suit == Card.Suit.DIAMONDS || suit == Card.Suit.HEARTS)
+			buffer.append(RED).append(card.shortdesc()).append(RESET);
+		else
+			buffer.append(card.shortdesc());
+	}
+
+	/**
+	 * Display a spinning text-effect, a frame at a time.
+	 *
+	 * @return nothing
+	 */
+	public void shuffle() {
+		buffer.append("Shuffling the deck... ");
+		flush();
+		for (int i = 0; i < SPIN_FRAMES; i++) {
+			out.print(SPIN.charAt(i % SPIN.length()));
+			out.print('\b');
+			out.flush();
+			try {
+				Thread.sleep(SPIN_FRAME_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		buffer.append("done\n\n");
+	}
+
+	/**
+	 * Display the shuffle without spinning, not to hold up every turn
+	 * that empties the deck.
+	 *
+	 * @return nothing
+	 */
+	public void reshuffle() {
+		super.shuffle();
+	}
+
+	public void clear() {
+		buffer.append(CLEAR);
+	}
+}
@@ -0,0 +1,517 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package agonia;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+
+/**
+ * Plays many matches between PlayerCPU players at once, with the state of
+ * every match kept in primitive arrays instead of objects.
+ *
+ * Each field of a match (its generator, hands, discard pile, points,
+ * round, deck, down card and suit, last cards and turn) is an array over
+ * all matches, so a match takes about a hundred bytes on a table of two,
+ * against several hundred in Deck, Player and Hand objects, and the
+ * matches are played by walking the arrays in order.
+ *
+ * The rules and decisions are those of GameEngine with PlayerCPU players,
+ * and the shuffles those of a SplittableRandom seeded like the engine's,
+ * so a match played here ends exactly like GameEngine plays it from the
+ * same seed.
+ */
+public class BatchEngine {
+	private int games;
+	private int seats;
+	private int pointsLimit;
+
+	// one element per match, or per seat of each match
+	private long[] rngs;     // state of the match's generator
+	private long[] hands;    // per seat
+	private long[] discards;
+	private int[] points;    // per seat
+	private int[] rounds;
+	private byte[] piles;    // NUM_CARDS per match, the deck
+	private byte[] tops;     // next card to deal
+	private byte[] sizes;    // cards in the deck
+	private byte[] downcards;
+	private byte[] downsuits;
+	private byte[] lastCards; // 2 per seat, -1 if none
+	private byte[] turns;    // seat to play
+	private byte[] states;   // BETWEEN_ROUNDS to OVER
+	private long[] playables; // cards the seat to play can play
+
+	//------------------Constant definitions----------------------
+	static final int BETWEEN_ROUNDS = 0;
+	static final int PLAYING = 1;
+	static final int OVER = 2;
+
+	// increment of SplittableRandom's generator
+	static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	// matches a task of run() or step() works on
+	static final int MATCHES_PER_TASK = 256;
+
+	//--------------------Constructor-----------------------------
+
+	/**
+	 * @param games number of matches played at once
+	 * @param seats players at each table, 2 to GameEngine.MAX_PLAYERS
+	 * @param pointsLimit points limit of every match
+	 */
+	public BatchEngine(int games, int seats, int pointsLimit) {
+		if (seats < GameEngine.MIN_PLAYERS
+		|| seats > GameEngine.MAX_PLAYERS)
+			throw new IllegalArgumentException(
+			        "A table has 2 to " + GameEngine.MAX_PLAYERS +
+			        " players");
+		this.games = games;
+		this.seats = seats;
+		this.pointsLimit = pointsLimit;
+
+		rngs = new long[games];
+		hands = new long[games * seats];
+		discards = new long[games];
+		points = new int[games * seats];
+		rounds = new int[games];
+		piles = new byte[Math.multiplyExact(games, Deck.NUM_CARDS)];
+		tops = new byte[games];
+		sizes = new byte[games];
+		downcards = new byte[games];
+		downsuits = new byte[games];
+		lastCards = new byte[2 * games * seats];
+		turns = new byte[games];
+		states = new byte[games];
+		playables = new long[games];
+		Arrays.fill(states, (byte) OVER);
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public int games() { return games; }
+	public int seats() { return seats; }
+	public boolean isOver(int game) { return states[game] == OVER; }
+	public int round(int game) { return rounds[game]; }
+
+	public int points(int game, int seat) {
+		return points[game * seats + seat];
+	}
+
+	/**
+	 * Return the bytes of state each match takes, summed over the arrays
+	 * that hold it.
+	 *
+	 * @return bytes per match
+	 */
+	public int bytesPerGame() {
+		long bytes = (long) Long.BYTES * (rngs.length + hands.length
+		                                  + discards.length
+		                                  + playables.length)
+		             + (long) Integer.BYTES * (points.length
+		                                       + rounds.length)
+		             + piles.length + tops.length + sizes.length
+		             + downcards.length + downsuits.length
+		             + lastCards.length + turns.length + states.length;
+		return games == 0 ? 0 : (int) (bytes / games);
+	}
+
+	/**
+	 * Start a new match in a slot, like a new GameEngine with the seed.
+	 *
+	 * @param game the slot
+	 * @param seed seed of all the shuffles of the match
+	 * @return nothing
+	 */
+	public void reset(int game, long seed) {
+		rngs[game] = seed;
+		for (int s = game * seats; s < (game + 1) * seats; s++) {
+			hands[s] = 0;
+			points[s] = 0;
+			lastCards[2 * s] = -1;
+			lastCards[2 * s + 1] = -1;
+		}
+		rounds[game] = 0;
+		states[game] = BETWEEN_ROUNDS;
+	}
+
+	/**
+	 * Return the seat with the fewer points, the first of them on a tie,
+	 * as GameEngine.winner() does.
+	 *
+	 * @param game the match, once over
+	 * @return seat of the winner
+	 */
+	public int winner(int game) {
+		int winner = 0;
+		for (int s = 1; s < seats; s++)
+			if (points(game, s) < points(game, winner))
+				winner = s;
+		return winner;
+	}
+
+	/**
+	 * Advance every match one step, in parallel.
+	 *
+	 * @return number of matches not over
+	 */
+	public int step() {
+		return IntStream.range(0, tasks()).parallel()
+		                .map(i -> step(i * MATCHES_PER_TASK,
+		                               Math.min(games,
+		                                        (i + 1) * MATCHES_PER_TASK)))
+		                .sum();
+	}
+
+	/**
+	 * Play every match to its end, in parallel.
+	 *
+	 * Unlike calling step() until nothing runs, each task plays its
+	 * matches to the end before taking the next ones, so the state it
+	 * works on stays in the cache. The matches end the same either way.
+	 *
+	 * @return nothing
+	 */
+	public void run() {
+		IntStream.range(0, tasks()).parallel().forEach(i -> {
+			int from = i * MATCHES_PER_TASK;
+			int to = Math.min(games, from + MATCHES_PER_TASK);
+			while (step(from, to) > 0)
+				;
+		});
+	}
+
+	private int tasks() {
+		return (games + MATCHES_PER_TASK - 1) / MATCHES_PER_TASK;
+	}
+
+	/**
+	 * Advance a range of matches one step: start a round, or play a turn
+	 * and charge the losers if it ends the round. Matches that are over
+	 * stay as they are.
+	 *
+	 * The cards each seat to play can play are found for the whole range
+	 * at once by LegalMoves.
+	 *
+	 * @param from first match
+	 * @param to match after the last one
+	 * @return number of matches of the range not over
+	 */
+	public int step(int from, int to) {
+		for (int g = from; g < to; g++)
+			playables[g] = states[g] == PLAYING
+			               ? hands[g * seats + turns[g]] : 0;
+		LegalMoves.playable(playables, downcards, downsuits, playables,
+		                    from, to);
+
+		int running = 0;
+		for (int g = from; g < to; g++) {
+			switch (states[g]) {
+			case BETWEEN_ROUNDS:
+				startRound(g);
+				break;
+			case PLAYING:
+				int winner = playTurn(g, playables[g]);
+				if (winner >= 0)
+					endRound(g, winner);
+				break;
+			default:
+				continue;
+			}
+			if (states[g] != OVER)
+				running++;
+		}
+		return running;
+	}
+
+	/**
+	 * Shuffle, deal and play the first card of a round, as
+	 * GameEngine.startRound() and PlayerCPU.playFirstCard() do.
+	 */
+	private void startRound(int g) {
+		int first = rounds[g] % seats;
+		rounds[g]++;
+
+		int pile = Deck.NUM_CARDS * g;
+		for (int i = 0; i < Deck.NUM_CARDS; i++)
+			piles[pile + i] = (byte) i;
+		tops[g] = 0;
+		sizes[g] = Deck.NUM_CARDS;
+		discards[g] = 0;
+		shuffle(g);
+
+		int down = deal(g);
+		downcards[g] = (byte) down;
+		downsuits[g] = (byte) Hand.suitOf(down);
+		int seat = g * seats;
+		for (int s = 0; s < seats; s++)
+			hands[seat + s] = 0;
+		int n = Deck.startingCards(seats) * seats;
+		for (int i = 0, s = 0; i < n; i++) {
+			hands[seat + s] |= 1L << deal(g);
+			if (++s == seats)
+				s = 0;
+		}
+
+		int turn = first;
+		switch (Hand.numOf(down)) {
+		case 1:
+			downsuits[g] = (byte) Hand.dominantSuit(hands[seat + first]);
+			break;
+		case 7:
+			turn = sevenLoop(g, first);
+			break;
+		case 8:
+			turn = next(first);
+			break;
+		}
+		turns[g] = (byte) turn;
+		states[g] = PLAYING;
+	}
+
+	/**
+	 * Play a turn as PlayerCPU.play() and GameEngine.playTurn() do.
+	 *
+	 * @param playable the cards of the seat to play that can be played
+	 * @return the seat that won the round, or -1
+	 */
+	private int playTurn(int g, long playable) {
+		int seat = g * seats;
+		int cp = turns[g];
+		int opponent = next(cp);
+		int downcard = downcards[g];
+		int downsuit = downsuits[g];
+		long hand = hands[seat + cp];
+		boolean defend = shouldDefend(g, opponent);
+
+		int card = PlayerCPU.pickPlayable(hand, playable, downsuit, defend);
+		if (card < 0) {
+			int pulled = deal(g);
+			if (pulled >= 0) {
+				hand |= 1L << pulled;
+				if (Hand.playable(1L << pulled, downcard,
+				                  downsuit) != 0)
+					card = pulled;
+			}
+		}
+
+		int next = opponent;
+		if (card >= 0) {
+			hand &= ~(1L << card);
+			remember(g, cp, card);
+			putDown(g, card);
+		}
+		hands[seat + cp] = hand;
+
+		if (card >= 0) {
+			switch (Hand.numOf(card)) {
+			case 1:
+				downsuits[g] = (byte) (defend
+				               ? PlayerCPU.pickSuit(hand, downsuit, true)
+				               : Hand.dominantSuit(hand));
+				break;
+			case 7: // the 7s may come round to cp again
+				next = sevenLoop(g, opponent);
+				break;
+			case 8:
+				next = next(opponent);
+				break;
+			}
+		}
+
+		if (hands[seat + cp] == 0)
+			return cp;
+		if (hands[seat + next] == 0)
+			return next;
+		turns[g] = (byte) next;
+		return -1;
+	}
+
+	/**
+	 * Answer a 7 card around the table as Player.doSevenLoop() does.
+	 *
+	 * @return the seat that pulled, or the one that answered with its
+	 *         last card
+	 */
+	private int sevenLoop(int g, int responder) {
+		int seat = g * seats;
+		int n = 2;
+		int cp = responder;
+		int card;
+
+		while ((card = PlayerCPU.pickSeven(hands[seat + cp])) >= 0) {
+			hands[seat + cp] &= ~(1L << card);
+			remember(g, cp, card);
+			putDown(g, card);
+			if (hands[seat + cp] == 0)
+				return cp;
+			n += 2;
+			cp = next(cp);
+		}
+
+		for (int i = 0; i < n; i++) {
+			card = deal(g);
+			if (card < 0)
+				break;
+			hands[seat + cp] |= 1L << card;
+		}
+		return cp;
+	}
+
+	/**
+	 * Charge every seat but the winner as GameEngine.endRound() does.
+	 */
+	private void endRound(int g, int winner) {
+		boolean over = false;
+		for (int s = 0; s < seats; s++) {
+			int i = g * seats + s;
+			if (s != winner)
+				points[i] += Hand.value(hands[i]);
+			if (points[i] >= pointsLimit)
+				over = true;
+		}
+		states[g] = (byte) (over ? OVER : BETWEEN_ROUNDS);
+	}
+
+	/**
+	 * Deal the next card of the deck, reshuffling the discard pile into
+	 * it when it runs out, as Deck.dealOneCard() does.
+	 *
+	 * @return index of the card, or -1 if there are no cards left
+	 */
+	private int deal(int g) {
+		int pile = Deck.NUM_CARDS * g;
+		int top = tops[g];
+		if (top == sizes[g]) {
+			long cards = discards[g];
+			int size = 0;
+			while (cards != 0) {
+				piles[pile + size++] =
+				        (byte) Long.numberOfTrailingZeros(cards);
+				cards &= cards - 1;
+			}
+			discards[g] = 0;
+			sizes[g] = (byte) size;
+			tops[g] = 0;
+			top = 0;
+			shuffle(g);
+			if (size == 0)
+				return -1;
+		}
+		tops[g] = (byte) (top + 1);
+		return piles[pile + top];
+	}
+
+	/**
+	 * Fisher-Yates over the cards left to deal, as Deck.shuffle() does,
+	 * drawing from the match's generator as SplittableRandom.nextInt()
+	 * would.
+	 */
+	private void shuffle(int g) {
+		int pile = Deck.NUM_CARDS * g;
+		int top = tops[g];
+		long seed = rngs[g];
+
+		for (int i = sizes[g] - 1; i > top; i--) {
+			int bound = i - top + 1;
+			int m = bound - 1;
+			int r = mix32(seed += GOLDEN_GAMMA);
+			if ((bound & m) == 0) {
+				r &= m;
+			} else {
+				for (int u = r >>> 1; u + m - (r = u % bound) < 0; )
+					u = mix32(seed += GOLDEN_GAMMA) >>> 1;
+			}
+			int j = pile + top + r;
+			byte tmp = piles[pile + i];
+			piles[pile + i] = piles[j];
+			piles[j] = tmp;
+		}
+		rngs[g] = seed;
+	}
+
+	private void putDown(int g, int card) {
+		discards[g] |= 1L << downcards[g];
+		downcards[g] = (byte) card;
+		downsuits[g] = (byte) Hand.suitOf(card);
+	}
+
+	private void remember(int g, int seat, int card) {
+		int i = 2 * (g * seats + seat);
+		lastCards[i] = lastCards[i + 1];
+		lastCards[i + 1] = (byte) card;
+	}
+
+	private boolean shouldDefend(int g, int seat) {
+		int i = g * seats + seat;
+		if (Long.bitCount(hands[i]) != 1)
+			return false;
+		for (int j = 2 * i; j < 2 * i + 2; j++)
+			if (lastCards[j] >= 0 && Hand.numOf(lastCards[j]) == 1)
+				return true;
+		return false;
+	}
+
+	private int next(int seat) { return seat + 1 == seats ? 0 : seat + 1; }
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Return the next int of a SplittableRandom from its next seed.
+	 */
+	private static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	/**
+	 * Play a batch of matches between CPU players and print the results.
+	 *
+	 * Arguments, all optional: number of matches, seats at each table and
+	 * master seed.
+	 */
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int seats = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		long seed = args.length > 2 ? Long.parseLong(args[2])
+		                            : System.nanoTime();
+
+		BatchEngine batch = new BatchEngine(games, seats, 100);
+		for (int i = 0; i < games; i++)
+			batch.reset(i, GameEngine.seedOf(seed, i));
+
+		long start = System.nanoTime();
+		batch.run();
+		double secs = (System.nanoTime() - start) / 1e9;
+
+		long firstWins = 0, rounds = 0;
+		for (int i = 0; i < games; i++) {
+			if (batch.winner(i) == 0)
+				firstWins++;
+			rounds += batch.round(i);
+		}
+		System.out.printf("Matches: %d, seats: %d, seed: %d%n",
+		                  games, seats, seed);
+		System.out.printf("%d bytes per match%n", batch.bytesPerGame());
+		System.out.printf("First player wins: %.2f%%%n",
+		                  100.0 * firstWins / games);
+		System.out.printf("Average rounds:    %.2f%n",
+		                  (double) rounds / games);
+		System.out.printf("%.0f matches per second%n", games / secs);
+	}
+}
@@ -24,6 +24,7 @@ public class Card {
 	private String shortdesc; // short description eg. 'JS'
 	private String longdesc;  // long description eg. 'Jack of Spades'
 	private int value;        // card's worth in points, according to rules
+	private int index;        // position in a sorted deck, see index()
 
 	public enum Suit {
 		INVALID   (0, "-"),
@@ -44,13 +45,26 @@ public class Card {
 		public String str() { return str; }
 	}
 
-	//--------------------Constructors----------------------------
+	private static final Suit[] SUITS = Suit.values(); // indexed by id
 
-	public Card(int num, Suit suit, int value) {
+	// The only Card instances, one for each card of the deck, sorted by
+	// suit and num. Cards can therefore be compared with ==.
+	private static final Card[] TABLE = new Card[Deck.NUM_CARDS];
+
+	static {
+		for (int s = 1; s <= Deck.NUM_SUITS; s++)
+			for (int n = 1; n <= Deck.NUM_NUMS; n++)
+				new Card(n, Card.intToSuit(s));
+	}
+
+	//--------------------Constructor-----------------------------
+
+	private Card(int num, Suit suit) {
 		this.num = num;
 		this.suit = suit;
-		this.value = value;
-		this.shortdesc = this.numIntToStr(num) + suit.str().charAt(0);
+		this.value = Card.valueOfCard(num);
+		this.index = (suit.id() - 1) * Deck.NUM_NUMS + num - 1;
+		this.shortdesc = Card.numIntToStr(num) + suit.str().charAt(0);
 
 		if (num == 1)
 			longdesc = "Ace";
@@ -63,17 +77,7 @@ public class Card {
 		longdesc += " of ";
 		longdesc += suit.str();
 
-	}
-	public Card(int num, int suit, int value) {
-		this(num, Card.intToSuit(suit), value);
-	}
-
-	public Card(char num, char suit, int value) {
-		this(Card.numCharToInt(num), Card.charToSuit(suit), value);
-	}
-
-	public Card(char num, Suit suit, int value) {
-		this(Card.numCharToInt(num), suit, value);
+		TABLE[index] = this;
 	}
 
 	//-----------------Non-static methods-------------------------
@@ -84,14 +88,53 @@ public class Card {
 	public String longdesc() { return longdesc; }
 	public int value() { return value; }
 
-	public boolean isValid() {
-		if (suit != Suit.INVALID && num >= 1 && num <= 13)
-			return true;
-		return false;
-	}
+	/**
+	 * Position of the card in a full deck sorted by suit and num.
+	 *
+	 * Diamonds come first, then Hearts, Spades and Clubs, each suit
+	 * ordered from Ace to King. Hands use it as the card's bit.
+	 *
+	 * @return 0 to 51, eg. 0 for 'AD' and 51 for 'KC'
+	 */
+	public int index() { return index; }
 
 	//--------------------Static methods--------------------------
 
+	/**
+	 * Look up a card by its index.
+	 *
+	 * @param index 0 to 51, see index()
+	 * @return the card
+	 */
+	public static Card of(int index) {
+		return TABLE[index];
+	}
+
+	/**
+	 * Look up a card by num and suit.
+	 *
+	 * @param num 1 to 13
+	 * @param suit suit of the card
+	 * @return the card or null if there is no such card
+	 */
+	public static Card of(int num, Suit suit) {
+		if (suit == Suit.INVALID || num < 1 || num > Deck.NUM_NUMS)
+			return null;
+		return TABLE[(suit.id() - 1) * Deck.NUM_NUMS + num - 1];
+	}
+
+	public static Card of(int num, int suit) {
+		return Card.of(num, Card.intToSuit(suit));
+	}
+
+	public static Card of(char num, char suit) {
+		return Card.of(Card.numCharToInt(num), Card.charToSuit(suit));
+	}
+
+	public static Card of(char num, Suit suit) {
+		return Card.of(Card.numCharToInt(num), suit);
+	}
+
 	public static Suit charToSuit(char c) {
 		for (Suit i : Suit.values())
 			if (i.str.charAt(0) == c)
@@ -99,11 +142,10 @@ public class Card {
 		return Suit.INVALID;
 	}
 
-	private static Suit intToSuit(int n) {
-		for (Suit i : Suit.values())
-			if (i.id() == n)
-				return i;
-		return Suit.INVALID;
+	static Suit intToSuit(int n) {
+		if (n < 0 || n >= SUITS.length)
+			return Suit.INVALID;
+		return SUITS[n];
 	}
 
 	private static String numIntToStr(int n) {
@@ -130,4 +172,21 @@ public class Card {
 			return c - Integer.valueOf('0'); // eg. '4' to 4
 		}
 	}
+
+	/**
+	 * Determine the value of a card according to game rules.
+	 *
+	 * @param n num of a card
+	 * @return card's worth in points
+	 */
+	private static int valueOfCard(int n) {
+		switch(n) {
+		case 11: case 12: case 13:
+			return 10;
+		case 1:
+			return 25;
+		default:
+			return n;
+		}
+	}
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+
+/**
+ * Case-insensitive index from the names of the cards to the cards.
+ *
+ * Every card can be named by its short description ("KS"), its long one
+ * ("King of Spades"), its short num with the suit ("K of Spades") and, for
+ * tens, "10S" too. Case, surrounding blanks and runs of blanks between
+ * words do not matter.
+ *
+ * The names are hashed into an open addressing table once, and a lookup
+ * hashes and compares the given name in place, allocating nothing.
+ */
+public final class CardNames {
+	// power of two, at least twice the number of names
+	private static final int SLOTS = 512;
+
+	private static final String[] keys = new String[SLOTS]; // lower case
+	private static final Card[] cards = new Card[SLOTS];
+
+	static {
+		for (int i = 0; i < Deck.NUM_CARDS; i++) {
+			Card card = Card.of(i);
+			String suit = card.suit().str();
+
+			put(card.shortdesc(), card);
+			put(card.longdesc(), card);
+			put(card.shortdesc().charAt(0) + " of " + suit, card);
+			if (card.num() == 10)
+				put("10" + suit.charAt(0), card);
+		}
+	}
+
+	private CardNames() {}
+
+	/**
+	 * Look up a card by name.
+	 *
+	 * @param name name of the card, in any case
+	 * @return the card, or null if no card has that name
+	 */
+	public static Card find(CharSequence name) {
+		int slot = hash(name) & (SLOTS - 1);
+
+		while (keys[slot] != null) {
+			if (matches(keys[slot], name))
+				return cards[slot];
+			slot = (slot + 1) & (SLOTS - 1);
+		}
+		return null;
+	}
+
+	private static void put(String name, Card card) {
+		String key = name.toLowerCase();
+		int slot = hash(key) & (SLOTS - 1);
+
+		while (keys[slot] != null)
+			slot = (slot + 1) & (SLOTS - 1);
+		keys[slot] = key;
+		cards[slot] = card;
+	}
+
+	/**
+	 * Hash a name as if it was lower case, trimmed and had single
+	 * spaces between its words.
+	 */
+	private static int hash(CharSequence name) {
+		int h = 0;
+		boolean blank = false; // blanks were skipped inside the name
+		boolean started = false;
+
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (Character.isWhitespace(c)) {
+				blank = started;
+				continue;
+			}
+			if (blank) {
+				h = 31 * h + ' ';
+				blank = false;
+			}
+			h = 31 * h + Character.toLowerCase(c);
+			started = true;
+		}
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Compare a key with a name the way hash() reads the name.
+	 */
+	private static boolean matches(String key, CharSequence name) {
+		int k = 0;
+		boolean blank = false;
+		boolean started = false;
+
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (Character.isWhitespace(c)) {
+				blank = started;
+				continue;
+			}
+			if (blank) {
+				if (k == key.length() || key.charAt(k++) != ' ')
+					return false;
+				blank = false;
+			}
+			if (k == key.length()
+			|| key.charAt(k++) != Character.toLowerCase(c))
+				return false;
+			started = true;
+		}
+		return k == key.length();
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package agonia;
+
+
+/**
+ * What a CPU player knows of the cards it cannot see, kept for the next
+ * player at the table, the one its cards are played on.
+ *
+ * The tracker registers with the deck of the round and the deck tells it
+ * about every public event: a card put down, a player pulling or folding
+ * and a reshuffle. Each event updates two masks:
+ *
+ * pile, the cards that may still be left to deal. At first every card
+ * the player cannot see; after a reshuffle exactly the played cards that
+ * went back to the deck.
+ *
+ * lacks, the cards the next player is believed not to hold. When he
+ * folds he had no card that could be played on the table, so all of them
+ * are added; when he pulls, the cards that may have been dealt to him are
+ * taken out again.
+ *
+ * A player may fold while holding playable cards, so for human opponents
+ * this is a belief, not a certainty.
+ */
+public class CardTracker {
+	private Player owner; // the player keeping track
+	private Deck deck;    // the round tracked, null before the first one
+	private long pile;    // cards that may be left to deal
+	private long lacks;   // cards the next player is believed not to hold
+	CardTracker next;     // next tracker of the same deck
+
+	//--------------------Constructor-----------------------------
+
+	/**
+	 * @param owner the player keeping track
+	 */
+	public CardTracker(Player owner) {
+		this.owner = owner;
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public long pile() { return pile; }
+	public long lacks() { return lacks; }
+
+	/**
+	 * Start tracking a round, unless it is tracked already. What happened
+	 * before is taken from the table as it is now.
+	 *
+	 * @param deck deck of the round
+	 * @return nothing
+	 */
+	public void track(Deck deck) {
+		if (this.deck == deck)
+			return;
+		this.deck = deck;
+		pile = unseen();
+		lacks = 0;
+		deck.addTracker(this);
+	}
+
+	/**
+	 * Return the cards the owner cannot see: those in the other hands
+	 * and in the pile.
+	 *
+	 * @return mask of the cards
+	 */
+	public long unseen() {
+		long seen = owner.cards.mask() | deck.discard();
+		if (deck.downcard() != null)
+			seen |= 1L << deck.downcard().index();
+		return Hand.ALL_CARDS & ~seen;
+	}
+
+	/**
+	 * Return the cards the next player may hold.
+	 *
+	 * @return mask of the cards
+	 */
+	public long possible() {
+		return unseen() & ~lacks;
+	}
+
+	/**
+	 * A card was put down.
+	 *
+	 * @param card the card
+	 * @return nothing
+	 */
+	void played(Card card) {
+		pile &= ~(1L << card.index());
+	}
+
+	/**
+	 * A player pulled a card, already in his hand.
+	 *
+	 * @param player the player
+	 * @return nothing
+	 */
+	void pulled(Player player) {
+		if (player == owner)
+			pile &= ~owner.cards.mask();
+		else if (player == owner.next)
+			lacks &= ~pile;
+	}
+
+	/**
+	 * A player folded on the table as it is.
+	 *
+	 * @param player the player
+	 * @return nothing
+	 */
+	void folded(Player player) {
+		if (player == owner.next)
+			lacks |= deck.playable(Hand.ALL_CARDS);
+	}
+
+	/**
+	 * The deck was refilled with a set of cards.
+	 *
+	 * @param cards mask of the cards in the deck
+	 * @return nothing
+	 */
+	void reshuffled(long cards) {
+		pile = cards;
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Return the cards a player holding some of a set of cards could not
+	 * answer: those with a num and a suit he has none of, when he has no
+	 * Ace.
+	 *
+	 * @param possible mask of the cards the player may hold
+	 * @return mask of the cards he cannot answer
+	 */
+	static long unanswered(long possible) {
+		if ((possible & Hand.rankMask(1)) != 0)
+			return 0;
+		long nums = (possible | possible >>> 13 | possible >>> 26
+		             | possible >>> 39) & Hand.SUIT_BITS;
+		long answered = nums * Hand.RANK_BITS; // every suit of the nums
+		for (int suit = 1; suit <= Deck.NUM_SUITS; suit++)
+			if ((possible & Hand.suitMask(suit)) != 0)
+				answered |= Hand.suitMask(suit);
+		return Hand.ALL_CARDS & ~answered;
+	}
+}
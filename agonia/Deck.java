@@ -17,177 +17,349 @@
 
 package agonia;
 
-import java.util.Collections;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 
 public class Deck {
-	private CardArray cards;
+	private byte[] cards; // indexes of the cards, see Card.index()
+	private int top;      // next card to deal, cards[top..size) are left
+	private int size;     // number of cards after a shuffle
 	private Card downcard; // the up above card of all shown cards
+	private long discard;  // mask of the played cards below the downcard
 	private Card.Suit downsuit; // suit must be played
 	// not always same with downcard.suit() because of A cards
-
-	public CardArray getDeck() { return cards; }
+	private Renderer out;  // where the shuffles are shown
+	private RandomGenerator rnd; // source of all the shuffles
+	private GameRecorder recorder; // records what happens, null for none
+	private CardTracker trackers;  // first of the trackers told what
+	                               // happens, see CardTracker.next
 
 	//------------------Constant definitions----------------------
 	static final int NUM_SUITS = 4;
 	static final int NUM_NUMS = 13;
-	//static final int NUM_CARDS = NUM_SUITS * NUM_NUMS;
+	static final int NUM_CARDS = NUM_SUITS * NUM_NUMS;
 
 	// number of cards initially dealt to each player
 	static final int NUM_STARTINGS_CARDS = 7;
 
-	//--------------------Constructor-----------------------------
+	//--------------------Constructors----------------------------
 	public Deck() {
-		cards = new CardArray();
-		for (int s = 1; s <= NUM_SUITS; s++) {
-			for (int n = 1; n <= NUM_NUMS; n++) {
-				cards.add(new Card(n, s, valueOfCard(n)));
-			}
-		}
+		this(Renderer.NONE);
+	}
+
+	public Deck(Renderer out) {
+		this(out, ThreadLocalRandom.current());
+	}
+
+	/**
+	 * Create a deck that shuffles with the given generator. Two decks
+	 * with equally seeded generators deal the same cards.
+	 *
+	 * @param out renderer to show the shuffles on
+	 * @param rnd generator to shuffle with, not shared between threads
+	 */
+	public Deck(Renderer out, RandomGenerator rnd) {
+		this.out = out;
+		this.rnd = rnd;
+		cards = new byte[NUM_CARDS];
+		for (int i = 0; i < NUM_CARDS; i++)
+			cards[i] = (byte) i;
+		size = NUM_CARDS;
+		top = 0;
+		discard = 0;
 	}
 
 	//-----------------Non-static methods-------------------------
 
 	public Card downcard() { return downcard; }
 	public Card.Suit downsuit() { return downsuit; }
+	public int size() { return size - top; } // cards left to deal
+	public long discard() { return discard; }
+	public GameRecorder recorder() { return recorder; }
 
+	public void setRecorder(GameRecorder recorder) {
+		this.recorder = recorder;
+	}
 
+	/**
+	 * Tell a tracker about the cards played, the pulls, the folds and
+	 * the reshuffles from now on.
+	 *
+	 * @param tracker the tracker, not tracking another deck
+	 * @return nothing
+	 */
+	void addTracker(CardTracker tracker) {
+		tracker.next = trackers;
+		trackers = tracker;
+	}
+
+	/**
+	 * Put a card on the table. The previous downcard goes to the discard
+	 * pile, to be dealt again after a reshuffle.
+	 *
+	 * @param card card played
+	 * @return nothing
+	 */
 	public void setDowncard(Card card) {
+		if (downcard != null)
+			discard |= 1L << downcard.index();
 		downcard = card;
 		downsuit = downcard.suit();
+		if (recorder != null)
+			recorder.down(card);
+		for (CardTracker i = trackers; i != null; i = i.next)
+			i.played(card);
+	}
+
+	/**
+	 * Return the cards of a set that can be played on the downcard.
+	 *
+	 * @param cards mask of cards
+	 * @return mask of the playable ones
+	 */
+	public long playable(long cards) {
+		return Hand.playable(cards, downcard.index(), downsuit.id());
+	}
+
+	/**
+	 * Check if a card can be played on the downcard.
+	 *
+	 * @param card the card
+	 * @return true if it is an Ace or has the num of the downcard or the
+	 *         suit must be played, else false
+	 */
+	public boolean isPlayable(Card card) {
+		return playable(1L << card.index()) != 0;
 	}
 
 	public void setDownsuit(Card.Suit suit) {
 		downsuit = suit;
+		if (recorder != null)
+			recorder.suit(suit);
 	}
 
 	/**
-	 * Shuffles the deck and displays a spin-effect on the screen.
+	 * A player has pulled a card into his hand, see Player.pull().
 	 *
+	 * @param player the player
 	 * @return nothing
 	 */
-	public void shuffle() {
-		Collections.shuffle(cards);
-		doShuffleFancySpin();
+	public void pulled(Player player) {
+		for (CardTracker i = trackers; i != null; i = i.next)
+			i.pulled(player);
 	}
 
 	/**
-	 * Re-init deck by cloning a new instance of Deck, remove from it
-	 * p1cards, p2cards and the downcard, and make a shuffle.
+	 * A player folds, leaving the table as it is.
 	 *
-	 * @param p1cards player1 cards
-	 * @param p2cards player2 cards
+	 * @param player the player
 	 * @return nothing
 	 */
-	public void reshuffle(CardArray p1cards, CardArray p2cards) {
-		Deck newdeck = new Deck();
-		CardArray shouldRemoved = new CardArray();
+	public void folded(Player player) {
+		if (recorder != null)
+			recorder.fold();
+		for (CardTracker i = trackers; i != null; i = i.next)
+			i.folded(player);
+	}
 
-		cards = (CardArray) newdeck.cards.clone();
+	/**
+	 * Shuffles the deck and shows it on the renderer.
+	 *
+	 * @return nothing
+	 */
+	public void shuffle() {
+		mix();
+		out.shuffle();
+	}
 
-		shouldRemoved.add(downcard);
-		for (Card i : p1cards) {
-			shouldRemoved.add(i);
-		}
-		for (Card i : p2cards) {
-			shouldRemoved.add(i);
+	/**
+	 * Fisher-Yates over the cards left to deal.
+	 *
+	 * @return nothing
+	 */
+	private void mix() {
+		for (int i = size - 1; i > top; i--) {
+			int j = top + rnd.nextInt(i - top + 1);
+			byte tmp = cards[i];
+			cards[i] = cards[j];
+			cards[j] = tmp;
 		}
+	}
 
-		for (Card i : shouldRemoved) {
-			for (Card y : cards) {
-				if (i.num() == y.num() && i.suit() == y.suit()) {
-					cards.remove(y);
-					break;
-				}
-			}
+	/**
+	 * Re-init deck with the cards of the discard pile and make a shuffle.
+	 *
+	 * @return nothing
+	 */
+	public void reshuffle() {
+		reshuffle(discard);
 	}
-		shuffle();
+
+	/**
+	 * Re-init deck with all the cards that are not in the given hands or
+	 * the downcard, and make a shuffle.
+	 *
+	 * Gives the same deck as reshuffle() but does not rely on the discard
+	 * pile, eg. when the hands were set up by hand.
+	 *
+	 * @param hands the hands of all players
+	 * @return nothing
+	 */
+	public void reshuffle(Hand... hands) {
+		long seen = 0;
+		for (Hand i : hands)
+			seen |= i.mask();
+		if (downcard != null)
+			seen |= 1L << downcard.index();
+
+		reshuffle(Hand.ALL_CARDS & ~seen);
+	}
+
+	/**
+	 * Re-init deck with a set of cards and make a shuffle, telling the
+	 * trackers, the metrics and the recorder.
+	 *
+	 * @param pile mask of the cards to put in the deck
+	 * @return nothing
+	 */
+	private void reshuffle(long pile) {
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		for (CardTracker i = trackers; i != null; i = i.next)
+			i.reshuffled(pile);
+		refill(pile);
+		mix();
+		out.reshuffle();
+		if (Metrics.ENABLED)
+			Metrics.reshuffle(start, size);
+		if (recorder != null)
+			recorder.reshuffle();
 	}
 
 	/**
 	 * Deal downcard and the starting number of cards to each player,
-	 * one by one.
+	 * one by one, in the given order.
 	 *
-	 * @param player1 player to deal cards to
-	 * @param player2 player to deal cards to
+	 * @param players players to deal cards to, 2 to GameEngine.MAX_PLAYERS
 	 * @return nothing
 	 */
-	public void dealCards(Player player1, Player player2) {
-		setDowncard(dealOneCard(player1, player2));
-		player1.cards.clear();
-		player2.cards.clear();
-		for (int i = 0; i < NUM_STARTINGS_CARDS * Agonia.NUM_PLAYERS; i++) {
-			Card card = cards.get(0);
-			cards.remove(0);
-			if (i % 2 == 0) {
-				player1.cards.add(card);
-			} else {
-				player2.cards.add(card);
-			}
+	public void dealCards(Player... players) {
+		setDowncard(dealOneCard());
+		for (Player i : players)
+			i.cards.clear();
+
+		int n = startingCards(players.length) * players.length;
+		for (int i = 0, p = 0; i < n; i++) {
+			Card card = Card.of(cards[top++]);
+			if (recorder != null)
+				recorder.deal(card);
+			players[p].cards.add(card);
+			if (++p == players.length)
+				p = 0;
 		}
 	}
 
 	/**
-	 * Remove the first card from the deck and return it.
+	 * Remove the first card from the deck and return it, reshuffling
+	 * the played cards if the deck is empty.
 	 *
-	 * @return the dealed card or null if deck is empty
+	 * @return the dealed card or null if there are no cards left even
+	 *         after reshuffling
 	 */
-	public Card dealOneCard(Player player1, Player player2) {
+	public Card dealOneCard() {
 		if (isEmpty())
-			reshuffle(player1.cards, player2.cards);
-
-		Card card = cards.get(0);
-		cards.remove(0);
+			reshuffle();
+		if (isEmpty())
+			return null;
 
+		Card card = Card.of(cards[top++]);
+		if (recorder != null)
+			recorder.deal(card);
 		return card;
 	}
 
 	/**
-	 * Check if deck is empty.
+	 * Replace the cards left to deal with a set of cards, sorted by suit
+	 * and num. The discard pile is emptied.
 	 *
-	 * @return true if deck is empty, else false
+	 * @param pile mask of the cards to put in the deck
+	 * @return nothing
 	 */
-	public boolean isEmpty() {
-		return cards.isEmpty();
+	private void refill(long pile) {
+		size = 0;
+		top = 0;
+		while (pile != 0) {
+			cards[size++] = (byte) Long.numberOfTrailingZeros(pile);
+			pile &= pile - 1;
+		}
+		discard = 0;
 	}
 
-	//--------------------Static methods--------------------------
+	/**
+	 * Write the state of the table: the cards left to deal in order, the
+	 * discard pile, the downcard and the downsuit. 11 bytes plus one per
+	 * card left.
+	 *
+	 * @param dst where to write
+	 * @return nothing
+	 * @throws IOException if writing fails
+	 */
+	public void save(DataOutput dst) throws IOException {
+		dst.writeByte(size - top);
+		dst.write(cards, top, size - top);
+		dst.writeLong(discard);
+		dst.writeByte(downcard == null ? -1 : downcard.index());
+		dst.writeByte(downsuit == null ? 0 : downsuit.id());
+	}
 
 	/**
-	 * Display a spinning text-effect on the screen.
+	 * Read back what save() wrote. Nothing is recorded.
 	 *
+	 * @param src where to read from
 	 * @return nothing
+	 * @throws IOException if reading fails or the state is invalid
 	 */
-	private static void doShuffleFancySpin() {
-		System.out.println("Shuffling the deck...");
-		for (int i = 0; i < 50000; i++) {
-			System.out.print("|");
-			System.out.print("\b");
-			System.out.print("/");
-			System.out.print("\b");
-			System.out.print("-");
-			System.out.print("\b");
-			System.out.print("\\");
-			System.out.print("\b");
-		}
-		System.out.println("|/|");
-		System.out.println("done\n");
+	public void load(DataInput src) throws IOException {
+		top = 0;
+		size = src.readUnsignedByte();
+		if (size > NUM_CARDS)
+			throw new IOException("Invalid deck size: " + size);
+		src.readFully(cards, 0, size);
+		for (int i = 0; i < size; i++)
+			if (cards[i] < 0 || cards[i] >= NUM_CARDS)
+				throw new IOException("Invalid card: " + cards[i]);
+		discard = src.readLong() & Hand.ALL_CARDS;
+		int index = src.readByte();
+		if (index < -1 || index >= NUM_CARDS)
+			throw new IOException("Invalid downcard: " + index);
+		downcard = index < 0 ? null : Card.of(index);
+		int suit = src.readUnsignedByte();
+		if (suit > NUM_SUITS)
+			throw new IOException("Invalid downsuit: " + suit);
+		downsuit = suit == 0 ? null : Card.intToSuit(suit);
 	}
 
 	/**
-	 * Determine the value of a card according to game rules.
+	 * Return the number of cards dealt to each player: 7, or fewer on
+	 * large tables so that at least one card per player is left to pull.
 	 *
-	 * @param n num of a card
-	 * @return card's worth in points
+	 * @param players number of players
+	 * @return cards per player
 	 */
-	private static int valueOfCard(int n) {
-		switch(n) {
-		case 11: case 12: case 13:
-			return 10;
-		case 1:
-			return 25;
-		default:
-			return n;
-		}
+	static int startingCards(int players) {
+		return Math.min(NUM_STARTINGS_CARDS,
+		                (NUM_CARDS - 1 - players) / players);
+	}
+
+	/**
+	 * Check if deck is empty.
+	 *
+	 * @return true if deck is empty, else false
+	 */
+	public boolean isEmpty() {
+		return top == size;
 	}
 }
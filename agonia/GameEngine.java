@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Plays whole matches of Agonia, round after round, until a player reaches
+ * the points limit.
+ *
+ * A table has 2 to MAX_PLAYERS players. Each player knows the one on his
+ * left, who plays after him, and a turn returns the player of the next
+ * turn: the next one, the one after him if an 8 was played, or whoever
+ * pulled after a 7. Finding the next turn costs the same on any table.
+ *
+ * The public constructors make a headless engine: the players and the deck
+ * are silenced, so CPU players can play each other without touching the
+ * console at all.
+ *
+ * All the shuffles of a match come from a generator seeded with the seed
+ * of the engine, so a match between CPU players can be replayed exactly
+ * from its seed.
+ *
+ * Between any two turns the whole match can be saved in about a hundred
+ * bytes and restored later, see save() and restore(). A restored engine
+ * goes on with the same cards, but its later shuffles come from a
+ * generator seeded anew, so they differ from those of the saved engine.
+ */
+public class GameEngine {
+	private Player[] players; // players[0] plays first on the first round
+	private int pointsLimit;
+	private Renderer out;     // passed to each deck
+	private long seed;
+	private SplittableRandom rnd; // shuffles the decks of all rounds
+	private int round;        // number of rounds played so far
+	private Player roundWinner;
+	private Deck deck;        // deck of the round played, null between rounds
+	private Player current;   // player of the next turn
+	private GameRecorder recorder; // records every round, null for none
+
+	//------------------Constant definitions----------------------
+	static final int MIN_PLAYERS = 2;
+	static final int MAX_PLAYERS = 8;
+
+	// first bytes of a checkpoint, "AGC" and a version
+	static final int CHECKPOINT_MAGIC = 0x41474302;
+
+	//--------------------Constructors----------------------------
+
+	public GameEngine(Player first, Player second, int pointsLimit) {
+		this(first, second, pointsLimit,
+		     ThreadLocalRandom.current().nextLong());
+	}
+
+	public GameEngine(Player first, Player second, int pointsLimit,
+	                  long seed) {
+		this(new Player[] {first, second}, pointsLimit, seed);
+	}
+
+	/**
+	 * Create a headless engine for a table of players.
+	 *
+	 * @param players players in seat order, the first plays first
+	 * @param pointsLimit points that end the match
+	 * @param seed seed of all the shuffles
+	 * @throws IllegalArgumentException if there are not 2 to MAX_PLAYERS
+	 *         players
+	 */
+	public GameEngine(Player[] players, int pointsLimit, long seed) {
+		this(players, pointsLimit, Renderer.NONE, seed);
+		for (Player i : players)
+			i.out = Renderer.NONE;
+	}
+
+	GameEngine(Player[] players, int pointsLimit, Renderer out,
+	           long seed) {
+		if (players.length < MIN_PLAYERS || players.length > MAX_PLAYERS)
+			throw new IllegalArgumentException(
+			        "A table has 2 to " + MAX_PLAYERS + " players");
+		this.players = players.clone();
+		this.pointsLimit = pointsLimit;
+		this.out = out;
+		this.seed = seed;
+		this.rnd = new SplittableRandom(seed);
+		this.round = 0;
+
+		for (int i = 0; i < players.length; i++) {
+			players[i].seat = i;
+			players[i].next = players[(i + 1) % players.length];
+		}
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public int round() { return round; }
+	public long seed() { return seed; }
+	public int pointsLimit() { return pointsLimit; }
+	public int numPlayers() { return players.length; }
+	public Player player(int seat) { return players[seat]; }
+	public Player roundWinner() { return roundWinner; }
+	public boolean isPlayingRound() { return deck != null; }
+
+	/**
+	 * Record the match from its next round on. The match is written
+	 * when it is over, see GameRecorder.
+	 *
+	 * @param recorder recorder to write to, null to stop recording
+	 * @return nothing
+	 */
+	public void setRecorder(GameRecorder recorder) {
+		this.recorder = recorder;
+		if (deck != null)
+			deck.setRecorder(recorder);
+		if (recorder != null)
+			recorder.beginGame(seed);
+	}
+
+	/**
+	 * Play a single round, from shuffling to charging the losers, or the
+	 * rest of the round if it was interrupted.
+	 *
+	 * Players take turns starting the rounds, the first player of the
+	 * engine starts the first one.
+	 *
+	 * @return points charged to the players that lost the round
+	 */
+	public int playRound() {
+		if (deck == null)
+			startRound();
+		while (! playTurn())
+			;
+		return endRound();
+	}
+
+	/**
+	 * Shuffle, deal and play the first card of a new round.
+	 *
+	 * @return nothing
+	 */
+	public void startRound() {
+		Player first = players[round % players.length];
+
+		deck = new Deck(out, rnd);
+		deck.setRecorder(recorder);
+		round++;
+		deck.shuffle();
+		deck.dealCards(players);
+
+		current = first.playFirstCard(deck, first.next);
+	}
+
+	/**
+	 * Play the turn of the player whose turn it is, in a started round.
+	 *
+	 * A player wins once his hand is empty at the end of a turn; that is
+	 * the player of the turn, or one that answered a 7 with his last card
+	 * and so would play next.
+	 *
+	 * @return true if the round was won, else false
+	 */
+	public boolean playTurn() {
+		Player cp = current;
+
+		if (recorder != null)
+			recorder.turn(cp.seat);
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		current = cp.play(deck, cp.next);
+		if (Metrics.ENABLED)
+			Metrics.turn(start);
+		out.flush();
+
+		if (cp.hasWon())
+			roundWinner = cp;
+		else if (current.cards.isEmpty() && current.hasWon())
+			roundWinner = current;
+		else
+			return false;
+		return true;
+	}
+
+	/**
+	 * Charge every player but the winner of the round, once playTurn()
+	 * says it is won.
+	 *
+	 * @return points charged to the players that lost the round
+	 */
+	public int endRound() {
+		int points = 0;
+
+		deck = null;
+		for (Player i : players)
+			if (i != roundWinner)
+				points += i.addPoints();
+		if (recorder != null) {
+			recorder.endRound();
+			if (isOver())
+				recorder.endGame();
+		}
+		return points;
+	}
+
+	/**
+	 * Check if any player has reached the points limit.
+	 *
+	 * @return true if the match is over, else false
+	 */
+	public boolean isOver() {
+		for (Player i : players)
+			if (i.points >= pointsLimit)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Return the player with the fewer points, the first of them on a tie.
+	 *
+	 * @return the winner, once the match is over
+	 */
+	public Player winner() {
+		Player winner = players[0];
+		for (Player i : players)
+			if (i.points < winner.points)
+				winner = i;
+		return winner;
+	}
+
+	/**
+	 * Play rounds until the match is over.
+	 *
+	 * @return the winner of the match, see winner()
+	 */
+	public Player playMatch() {
+		while (! isOver())
+			playRound();
+		return winner();
+	}
+
+	/**
+	 * Write the state of the match between two turns: its seed, limit and
+	 * round, the players in seat order and the deck of the round played.
+	 *
+	 * @param dst where to write
+	 * @return nothing
+	 * @throws IOException if writing fails
+	 */
+	public void save(DataOutput dst) throws IOException {
+		dst.writeInt(CHECKPOINT_MAGIC);
+		dst.writeLong(seed);
+		dst.writeInt(pointsLimit);
+		dst.writeInt(round);
+		dst.writeByte(players.length);
+		for (Player i : players)
+			i.save(dst);
+		dst.writeBoolean(deck != null);
+		if (deck != null) {
+			dst.writeByte(current.seat);
+			deck.save(dst);
+		}
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Restore a match written by save(). The players are as many, of the
+	 * same kind and in the same order as in the saved engine; their state
+	 * is overwritten. Like the public constructors, the engine is
+	 * headless.
+	 *
+	 * @param src where to read from
+	 * @param players players in seat order
+	 * @return an engine that goes on from the saved state
+	 * @throws IOException if reading fails or the state is invalid
+	 */
+	public static GameEngine restore(DataInput src, Player[] players)
+	                                throws IOException {
+		for (Player i : players)
+			i.out = Renderer.NONE;
+		return restore(src, players, Renderer.NONE);
+	}
+
+	static GameEngine restore(DataInput src, Player[] players,
+	                          Renderer out) throws IOException {
+		if (src.readInt() != CHECKPOINT_MAGIC)
+			throw new IOException("Not a match checkpoint");
+		long seed = src.readLong();
+		int pointsLimit = src.readInt();
+		int round = src.readInt();
+		if (src.readUnsignedByte() != players.length)
+			throw new IOException("Checkpoint of another table");
+
+		GameEngine engine = new GameEngine(players, pointsLimit, out,
+		                                   seed);
+		engine.round = round;
+		for (Player i : players)
+			i.load(src);
+		// the saved generator cannot be read back, derive a new one
+		engine.rnd = new SplittableRandom(seedOf(seed, -1 - round));
+		if (src.readBoolean()) {
+			int seat = src.readUnsignedByte();
+			if (seat >= players.length)
+				throw new IOException("Invalid seat: " + seat);
+			engine.current = players[seat];
+			engine.deck = new Deck(out, engine.rnd);
+			engine.deck.load(src);
+		}
+		return engine;
+	}
+
+	/**
+	 * Derive the seed of a game from a master seed.
+	 *
+	 * Seeds depend only on the master seed and the game number, not on
+	 * the order games are played in, so games can run in parallel and any
+	 * of them can be replayed alone.
+	 *
+	 * @param masterSeed seed of a whole run of games
+	 * @param game number of the game in the run
+	 * @return seed to construct the engine of that game with
+	 */
+	public static long seedOf(long masterSeed, long game) {
+		// SplitMix64, the same mixing SplittableRandom uses
+		long z = masterSeed + (game + 1) * 0x9e3779b97f4a7c15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Streams back the games of a file written by GameRecorder.
+ *
+ * The file is memory-mapped, a window at a time, and a game is read in
+ * place: next() moves to the following game and event() reads its events
+ * straight from the mapping. Nothing is allocated per game, so files with
+ * hundreds of millions of games can be scanned at the speed of the disk.
+ */
+public class GameRecordReader implements Closeable {
+	private FileChannel channel;
+	private long fileSize;
+	private MappedByteBuffer window;
+	private long windowStart;  // offset of the window in the file
+	private long next;         // offset of the next game in the file
+	private int events;        // offset of the events in the window
+	private int length;
+	private long seed;
+
+	// the window mapped at a time; games are much smaller than that
+	static final long WINDOW = 1L << 30;
+	static final int HEADER = 12; // seed and number of events
+
+	//--------------------Constructor-----------------------------
+
+	public GameRecordReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		fileSize = channel.size();
+		next = 0;
+		windowStart = -1;
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public long seed() { return seed; }
+	public int length() { return length; }
+
+	/**
+	 * Return an event of the current game.
+	 *
+	 * @param i number of the event, 0 to length() - 1
+	 * @return the event, 0 to 255, see GameRecorder
+	 */
+	public int event(int i) {
+		return window.get(events + i) & 0xFF;
+	}
+
+	/**
+	 * Move to the next game.
+	 *
+	 * @return true if there is one, false at the end of the file
+	 * @throws IOException if the file is truncated or corrupt, or cannot
+	 *                     be mapped
+	 */
+	public boolean next() throws IOException {
+		if (next + HEADER > fileSize) {
+			if (next != fileSize)
+				throw new IOException("Truncated game record");
+			return false;
+		}
+
+		map(next, HEADER);
+		int start = (int) (next - windowStart);
+		seed = window.getLong(start);
+		length = window.getInt(start + 8);
+		// a record is mapped whole, so it must fit in a window
+		if (length < 0 || length > WINDOW - HEADER)
+			throw new IOException("Invalid record length: " + length);
+		if (length > fileSize - next - HEADER)
+			throw new IOException("Truncated game record");
+
+		map(next, HEADER + length);
+		events = (int) (next - windowStart) + HEADER;
+		next += HEADER + length;
+		return true;
+	}
+
+	/**
+	 * Make sure the window covers a region of the file.
+	 */
+	private void map(long offset, long size) throws IOException {
+		if (windowStart >= 0 && offset >= windowStart
+		&& offset + size <= windowStart + window.capacity())
+			return;
+		windowStart = offset;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+		                     Math.min(Math.max(WINDOW, size),
+		                              fileSize - offset));
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Scan record files and print how many games, rounds and events
+	 * they hold.
+	 */
+	public static void main(String[] args) throws IOException {
+		long games = 0, rounds = 0, events = 0;
+		long start = System.nanoTime();
+
+		for (String i : args) {
+			try (GameRecordReader reader =
+			             new GameRecordReader(Path.of(i))) {
+				while (reader.next()) {
+					games++;
+					events += reader.length();
+					for (int e = 0; e < reader.length(); e++)
+						if (reader.event(e) == GameRecorder.END)
+							rounds++;
+				}
+			}
+		}
+
+		double secs = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games, %d rounds, %d events%n",
+		                  games, rounds, events);
+		System.out.printf("%.0f games per second%n", games / secs);
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+/**
+ * Writes a compact binary record of every game it is given.
+ *
+ * A record file is a sequence of games. A game is its seed (8 bytes), the
+ * number of its events (4 bytes) and one byte per event, in the order
+ * they happened on the table:
+ *
+ *   0x00-0x33  DEAL  a card (its index) left the deck
+ *   0x40-0x73  DOWN  a card (DOWN + index) became the down card
+ *   0x81-0x84  SUIT  the suit (SUIT + id) was set by an Ace
+ *   0xC0-0xC7  TURN  the seat (TURN + seat) starts its turn
+ *   0xF0       FOLD  the player to play folded
+ *   0xF1       RESHUFFLE  the discard pile went back to the deck
+ *   0xFF       END   the round is over
+ *
+ * Events of a game are gathered in memory and written when it ends, so a
+ * file only holds whole games. GameRecordReader reads them back.
+ */
+public class GameRecorder implements Closeable {
+	private DataOutputStream out;
+	private byte[] events; // events of the game being recorded
+	private int length;
+	private long seed;
+
+	//------------------Constant definitions----------------------
+	static final int DEAL = 0x00;
+	static final int DOWN = 0x40;
+	static final int SUIT = 0x80;
+	static final int TURN = 0xC0;
+	static final int FOLD = 0xF0;
+	static final int RESHUFFLE = 0xF1;
+	static final int END = 0xFF;
+
+	//--------------------Constructors----------------------------
+
+	public GameRecorder(OutputStream out) {
+		this.out = new DataOutputStream(new BufferedOutputStream(out,
+		                                                         1 << 16));
+		this.events = new byte[1024];
+	}
+
+	public GameRecorder(Path file) throws IOException {
+		this(Files.newOutputStream(file));
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public void beginGame(long seed) {
+		this.seed = seed;
+		length = 0;
+	}
+
+	public void deal(Card card) { add(DEAL + card.index()); }
+	public void down(Card card) { add(DOWN + card.index()); }
+	public void suit(Card.Suit suit) { add(SUIT + suit.id()); }
+	public void turn(int seat) { add(TURN + seat); }
+	public void fold() { add(FOLD); }
+	public void reshuffle() { add(RESHUFFLE); }
+	public void endRound() { add(END); }
+
+	/**
+	 * Write the game recorded since beginGame().
+	 *
+	 * @return nothing
+	 * @throws UncheckedIOException if writing fails
+	 */
+	public void endGame() {
+		try {
+			out.writeLong(seed);
+			out.writeInt(length);
+			out.write(events, 0, length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		length = 0;
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void add(int event) {
+		if (length == events.length) {
+			byte[] bigger = new byte[2 * length];
+			System.arraycopy(events, 0, bigger, 0, length);
+			events = bigger;
+		}
+		events[length++] = (byte) event;
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Return the kind of an event: DEAL, DOWN, SUIT, TURN, or the event
+	 * itself for FOLD, RESHUFFLE and END.
+	 *
+	 * @param event the event, 0 to 255
+	 * @return kind of the event
+	 */
+	public static int kind(int event) {
+		if (event >= FOLD)
+			return event;
+		return event & 0xC0;
+	}
+
+	/**
+	 * Return what an event is about: the card index of DEAL and DOWN, the
+	 * suit id of SUIT or the seat of TURN.
+	 *
+	 * @param event the event, 0 to 255
+	 * @return argument of the event
+	 */
+	public static int argument(int event) {
+		return event & 0x3F;
+	}
+}
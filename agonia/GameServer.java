@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package agonia;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * Hosts human vs CPU games over TCP, one game per connection.
+ *
+ * The protocol is the console game itself, line by line: the server sends
+ * what the console would display and the client answers each prompt with
+ * one line, so any line-based client (eg. telnet or nc) can play.
+ *
+ * Each session runs on its own thread and spends most of its life waiting
+ * for the user. On a JVM that has virtual threads every session gets one,
+ * so a server can keep a very large number of idle games open; elsewhere
+ * sessions fall back to a cached pool of platform threads.
+ *
+ * Given a directory, the server saves each named game there after every
+ * turn. A user that connects again with the same name, eg. after the
+ * server was restarted, goes on with the saved game.
+ */
+public class GameServer {
+	private int port;
+	private ExecutorService sessions;
+	private Path saveDir; // where games are saved, null for nowhere
+	private Set<String> playing; // names of the games being played
+
+	static final int DEFAULT_PORT = 4242;
+	static final String NAME_PATTERN = "[A-Za-z0-9_-]{1,32}";
+	// a user silent for that long is gone, his session ends
+	static final int IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+	//--------------------Constructors----------------------------
+
+	public GameServer(int port) {
+		this(port, null);
+	}
+
+	/**
+	 * @param port port to listen on
+	 * @param saveDir existing directory to save games in, null for none
+	 */
+	public GameServer(int port, Path saveDir) {
+		this.port = port;
+		this.saveDir = saveDir;
+		this.sessions = newSessionExecutor();
+		this.playing = ConcurrentHashMap.newKeySet();
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	/**
+	 * Accept connections forever, starting a game for each one. A
+	 * connection that fails to be accepted is logged and skipped.
+	 *
+	 * @return nothing
+	 * @throws IOException if the server socket cannot be opened or is
+	 *                     closed
+	 */
+	public void serve() throws IOException {
+		try (ServerSocket server = new ServerSocket(port)) {
+			while (true) {
+				Socket socket;
+				try {
+					socket = server.accept();
+				} catch (IOException e) {
+					if (server.isClosed())
+						throw e;
+					System.err.printf("Accept failed: %s%n", e);
+					continue;
+				}
+				sessions.execute(() -> playSession(socket));
+			}
+		} finally {
+			sessions.shutdown();
+		}
+	}
+
+	/**
+	 * Play a game with the user on the other end of a connection and
+	 * close it when the game ends, the user goes away or stays silent
+	 * for IDLE_TIMEOUT_MILLIS.
+	 *
+	 * @param socket the connection
+	 * @return nothing
+	 */
+	private void playSession(Socket socket) {
+		String name = null;
+
+		try (Socket s = socket) {
+			s.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+			Renderer out = new LineRenderer(new PrintStream(
+			        new BufferedOutputStream(s.getOutputStream()), false));
+			PlayerHuman playerHuman = new PlayerHuman(s.getInputStream(),
+			                                          out);
+			if (saveDir != null)
+				name = askName(playerHuman);
+			Agonia.playGame(playerHuman, name == null
+			                ? null : saveDir.resolve(name + ".sav"));
+		} catch (IOException | NoSuchElementException e) {
+			// connection lost, closed by the user or idle, the game
+			// stays saved if it has a name
+		} catch (RuntimeException e) {
+			// a bug, end this session only
+			System.err.printf("Session with %s failed: %s%n",
+			                  socket.getRemoteSocketAddress(), e);
+			e.printStackTrace();
+		} finally {
+			if (name != null)
+				playing.remove(name);
+		}
+	}
+
+	/**
+	 * Ask the user for the name to save the game under and claim it.
+	 *
+	 * @param playerHuman the user
+	 * @return the name, or null to play without saving
+	 */
+	private String askName(PlayerHuman playerHuman) {
+		Renderer out = playerHuman.out;
+
+		out.print("Name of your game, to save or resume it " +
+		          "(empty for none): ");
+		String name = playerHuman.readLine().trim();
+		if (name.isEmpty())
+			return null;
+		if (! name.matches(NAME_PATTERN)) {
+			out.println("Names are letters, digits, - and _. " +
+			            "The game will not be saved.");
+			return null;
+		}
+		if (! playing.add(name)) {
+			out.println("That game is being played. " +
+			            "The game will not be saved.");
+			return null;
+		}
+		return name;
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Create the executor sessions run on: one virtual thread per session
+	 * if the JVM supports them, else a cached thread pool.
+	 *
+	 * @return the executor
+	 */
+	static ExecutorService newSessionExecutor() {
+		try {
+			return (ExecutorService) Executors.class
+			        .getMethod("newVirtualThreadPerTaskExecutor")
+			        .invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Start a server. Arguments, both optional: the port and a directory
+	 * to save games in.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0])
+		                           : DEFAULT_PORT;
+		Path saveDir = args.length > 1 ? Path.of(args[1]) : null;
+
+		System.out.printf("Agonia server listening on port %d%n", port);
+		new GameServer(port, saveDir).serve();
+	}
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package agonia;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+
+/**
+ * A round of Agonia reduced to primitives, for players that search ahead.
+ *
+ * Cards are indexes (see Card.index()) and hands are masks. The state
+ * stops at every decision of a player's turn: which card to play, whether
+ * to pull or fold. apply() carries out a decision with the same rules as
+ * Player.play(), and the choices that follow it (the suit after an Ace,
+ * answering a 7) are made as PlayerCPU makes them.
+ *
+ * Nothing is allocated after construction, so a state can be copied and
+ * played out to the end of the round as many times as needed. A search
+ * that walks a tree can make() decisions and unmake() them instead of
+ * copying the state at every node.
+ */
+public class GameState {
+	long[] hands;        // mask of the cards of each seat
+	private byte[] pile; // cards left to deal, pile[top..size)
+	private int top;
+	private int size;
+	long discard;        // mask of the played cards below the downcard
+	int downcard;        // index of the down card
+	int downsuit;        // id of the suit must be played
+	int turn;            // seat to decide
+	boolean pulled;      // seat to decide has pulled a card this time
+	int winner;          // seat that won the round, -1 while playing
+	private int[] lastCards; // last two cards of each seat, -1 if none
+	private SplittableRandom rnd; // reshuffles the discard pile
+
+	// what make() saved before each decision, one frame per decision
+	private int depth;          // decisions made and not unmade
+	private long[] undoHands;   // NUM_SEATS hands per frame
+	private long[] undoDiscard;
+	private int[] undoState;    // STATE_SIZE scalars per frame
+	private byte[] undoPile;    // the pile before a reshuffle
+	private boolean[] undoReshuffled;
+	private int making;         // frame of the decision being made, or -1
+
+	//------------------Constant definitions----------------------
+	// tables of two players only, the searching player and his opponent
+	static final int NUM_SEATS = 2;
+
+	// decisions other than playing a card (cards are 0 to 51)
+	static final int PULL = Deck.NUM_CARDS;
+	static final int FOLD = Deck.NUM_CARDS + 1;
+
+	// decisions make() can stack up before they are unmade
+	static final int MAX_DEPTH = 256;
+	// top, size, downcard, downsuit, turn, pulled, winner, lastCards
+	private static final int STATE_SIZE = 7 + 2 * NUM_SEATS;
+
+	//--------------------Constructor-----------------------------
+
+	/**
+	 * @param rnd generator used when the discard pile is reshuffled
+	 */
+	public GameState(SplittableRandom rnd) {
+		hands = new long[NUM_SEATS];
+		pile = new byte[Deck.NUM_CARDS];
+		lastCards = new int[2 * NUM_SEATS];
+		this.rnd = rnd;
+		winner = -1;
+
+		undoHands = new long[MAX_DEPTH * NUM_SEATS];
+		undoDiscard = new long[MAX_DEPTH];
+		undoState = new int[MAX_DEPTH * STATE_SIZE];
+		undoPile = new byte[MAX_DEPTH * Deck.NUM_CARDS];
+		undoReshuffled = new boolean[MAX_DEPTH];
+		making = -1;
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public int turn() { return turn; }
+	public int winner() { return winner; }
+	public boolean isOver() { return winner >= 0; }
+	public int pileSize() { return size - top; }
+	public int depth() { return depth; }
+
+	/**
+	 * Set the state to a round as seen by one of its players, who is
+	 * about to choose a card.
+	 *
+	 * The player sits on seat 0 and knows his own cards, the table and
+	 * how many cards the others have. The others' hands are left empty
+	 * and the pile holds no cards until the state is determinized.
+	 *
+	 * @param deck deck of the round
+	 * @param me player to see the round as
+	 * @param opponent the other player
+	 * @return nothing
+	 */
+	public void observe(Deck deck, Player me, Player opponent) {
+		hands[0] = me.cards.mask();
+		hands[1] = 0;
+		top = 0;
+		size = 0;
+		discard = deck.discard();
+		downcard = deck.downcard().index();
+		downsuit = deck.downsuit().id();
+		turn = 0;
+		pulled = false;
+		winner = -1;
+		depth = 0;
+		setLastCards(0, me.lastCards);
+		setLastCards(1, opponent.lastCards);
+	}
+
+	private void setLastCards(int seat, Card[] cards) {
+		for (int i = 0; i < 2; i++)
+			lastCards[2 * seat + i] = cards[i] == null
+			                          ? -1 : cards[i].index();
+	}
+
+	/**
+	 * Copy another state and deal the cards it does not know at random:
+	 * the cards not in seat 0's hand, on the table or in the discard pile
+	 * go to seat 1 and the pile, in the given numbers.
+	 *
+	 * @param known state as seen by seat 0, see observe()
+	 * @param opponentCards number of cards of seat 1
+	 * @param pileCards number of cards left in the pile
+	 * @return nothing
+	 */
+	public void determinize(GameState known, int opponentCards,
+	                        int pileCards) {
+		copy(known);
+
+		long unseen = Hand.ALL_CARDS & ~(hands[0] | discard
+		                                 | 1L << downcard);
+		size = 0;
+		top = 0;
+		while (unseen != 0) {
+			pile[size++] = (byte) Long.numberOfTrailingZeros(unseen);
+			unseen &= unseen - 1;
+		}
+		shuffle();
+
+		hands[1] = 0;
+		for (int i = 0; i < opponentCards && top < size; i++)
+			hands[1] |= 1L << pile[top++];
+		if (size - top > pileCards)
+			size = top + pileCards;
+	}
+
+	/**
+	 * Make this state an exact copy of another. The decisions made on the
+	 * other state cannot be unmade on this one.
+	 *
+	 * @param other state to copy
+	 * @return nothing
+	 */
+	public void copy(GameState other) {
+		System.arraycopy(other.hands, 0, hands, 0, NUM_SEATS);
+		System.arraycopy(other.pile, 0, pile, 0, Deck.NUM_CARDS);
+		System.arraycopy(other.lastCards, 0, lastCards, 0,
+		                 lastCards.length);
+		top = other.top;
+		size = other.size;
+		discard = other.discard;
+		downcard = other.downcard;
+		downsuit = other.downsuit;
+		turn = other.turn;
+		pulled = other.pulled;
+		winner = other.winner;
+		depth = 0;
+	}
+
+	/**
+	 * Check if another state is the same round at the same point: the
+	 * same hands, pile, table, turn and last cards. The decisions made
+	 * to get there do not count.
+	 *
+	 * @param other state to compare with
+	 * @return true if they are the same, else false
+	 */
+	public boolean sameAs(GameState other) {
+		if (size - top != other.size - other.top)
+			return false;
+		for (int i = 0; i < size - top; i++)
+			if (pile[top + i] != other.pile[other.top + i])
+				return false;
+		return Arrays.equals(hands, other.hands)
+		       && Arrays.equals(lastCards, other.lastCards)
+		       && discard == other.discard
+		       && downcard == other.downcard
+		       && downsuit == other.downsuit
+		       && turn == other.turn
+		       && pulled == other.pulled
+		       && winner == other.winner;
+	}
+
+	/**
+	 * Return the decisions the seat to decide can take.
+	 *
+	 * A decision is a card index, PULL or FOLD, and the result has the
+	 * bit of each decision set. A player can pull once, and fold only
+	 * after pulling.
+	 *
+	 * @return mask of the legal decisions
+	 */
+	public long legal() {
+		long moves = playable(hands[turn]);
+		return moves | 1L << (pulled ? FOLD : PULL);
+	}
+
+	/**
+	 * Return the cards of a set that can be played on the down card.
+	 *
+	 * @param cards mask of cards
+	 * @return mask of the playable ones
+	 */
+	public long playable(long cards) {
+		return Hand.playable(cards, downcard, downsuit);
+	}
+
+	/**
+	 * Return the decision PlayerCPU would take for the seat to decide.
+	 *
+	 * @return a card index, PULL or FOLD
+	 */
+	public int policy() {
+		int card = PlayerCPU.pickCard(hands[turn], downcard, downsuit,
+		                              shouldDefend(next(turn)));
+		if (card >= 0)
+			return card;
+		return pulled ? FOLD : PULL;
+	}
+
+	/**
+	 * Carry out a decision of the seat to decide.
+	 *
+	 * @param move a legal card index, PULL or FOLD
+	 * @return nothing
+	 */
+	public void apply(int move) {
+		int me = turn;
+		int other = next(me);
+
+		if (move == PULL) {
+			int card = deal();
+			pulled = true;
+			if (card < 0) // nothing to pull, fold
+				endTurn(other);
+			else
+				hands[me] |= 1L << card;
+			return;
+		}
+		if (move == FOLD) {
+			endTurn(other);
+			return;
+		}
+
+		hands[me] &= ~(1L << move);
+		remember(me, move);
+		int prevSuit = downsuit;
+		putDown(move);
+
+		int next = other;
+		switch (Hand.numOf(move)) {
+		case 1:
+			downsuit = PlayerCPU.pickSuit(hands[me], prevSuit,
+			                              shouldDefend(other));
+			break;
+		case 7:
+			next = sevenLoop(other);
+			break;
+		case 8:
+			next = next(other);
+			break;
+		}
+		endTurn(next);
+	}
+
+	/**
+	 * Carry out a decision so that unmake() can take it back.
+	 *
+	 * A decision is a whole step of the round: playing a card with what
+	 * it brings (the suit after an Ace, the 7 cards answered and pulled,
+	 * the skipped seat after an 8), pulling or folding. Only the scalars
+	 * and hands of the state are saved, plus the pile if the decision
+	 * reshuffles it.
+	 *
+	 * @param move a legal card index, PULL or FOLD
+	 * @return nothing
+	 * @throws IllegalStateException if MAX_DEPTH decisions are made
+	 */
+	public void make(int move) {
+		if (depth == MAX_DEPTH)
+			throw new IllegalStateException("Too many decisions made");
+
+		int f = depth++;
+		System.arraycopy(hands, 0, undoHands, f * NUM_SEATS, NUM_SEATS);
+		undoDiscard[f] = discard;
+		int i = f * STATE_SIZE;
+		undoState[i++] = top;
+		undoState[i++] = size;
+		undoState[i++] = downcard;
+		undoState[i++] = downsuit;
+		undoState[i++] = turn;
+		undoState[i++] = pulled ? 1 : 0;
+		undoState[i++] = winner;
+		System.arraycopy(lastCards, 0, undoState, i, 2 * NUM_SEATS);
+		undoReshuffled[f] = false;
+
+		making = f;
+		apply(move);
+		making = -1;
+	}
+
+	/**
+	 * Take back the last decision make() carried out, restoring the
+	 * state exactly as it was. The generator of the reshuffles is not
+	 * rewound, so making the decision again may reshuffle differently.
+	 *
+	 * @return nothing
+	 * @throws IllegalStateException if there is no decision to unmake
+	 */
+	public void unmake() {
+		if (depth == 0)
+			throw new IllegalStateException("No decision to unmake");
+
+		int f = --depth;
+		System.arraycopy(undoHands, f * NUM_SEATS, hands, 0, NUM_SEATS);
+		discard = undoDiscard[f];
+		int i = f * STATE_SIZE;
+		top = undoState[i++];
+		size = undoState[i++];
+		downcard = undoState[i++];
+		downsuit = undoState[i++];
+		turn = undoState[i++];
+		pulled = undoState[i++] != 0;
+		winner = undoState[i++];
+		System.arraycopy(undoState, i, lastCards, 0, 2 * NUM_SEATS);
+		if (undoReshuffled[f])
+			System.arraycopy(undoPile, f * Deck.NUM_CARDS, pile, 0,
+			                 Deck.NUM_CARDS);
+	}
+
+	/**
+	 * Play the round to its end with every seat deciding like PlayerCPU.
+	 *
+	 * @param maxMoves number of decisions to give up after
+	 * @return the winning seat, or -1 if the round did not end in time
+	 */
+	public int playout(int maxMoves) {
+		for (int i = 0; i < maxMoves && winner < 0; i++)
+			apply(policy());
+		return winner;
+	}
+
+	/**
+	 * Answer 7 cards the way doSevenLoop() does, each seat playing a 7
+	 * while it has one.
+	 *
+	 * @param responder seat that must answer first
+	 * @return the seat that pulled, or the one that answered with its
+	 *         last card
+	 */
+	private int sevenLoop(int responder) {
+		int n = 2;
+		int cp = responder;
+		int card;
+
+		while ((card = PlayerCPU.pickSeven(hands[cp])) >= 0) {
+			hands[cp] &= ~(1L << card);
+			remember(cp, card);
+			putDown(card);
+			if (hands[cp] == 0)
+				return cp;
+			n += 2;
+			cp = next(cp);
+		}
+
+		for (int i = 0; i < n; i++) {
+			card = deal();
+			if (card < 0)
+				break;
+			hands[cp] |= 1L << card;
+		}
+		return cp;
+	}
+
+	/**
+	 * End the turn the way GameEngine.playTurn() does.
+	 *
+	 * @param next seat to play the next turn
+	 * @return nothing
+	 */
+	private void endTurn(int next) {
+		if (hands[turn] == 0) {
+			winner = turn;
+		} else if (hands[next] == 0) {
+			winner = next;
+		} else {
+			turn = next;
+			pulled = false;
+		}
+	}
+
+	private void putDown(int card) {
+		discard |= 1L << downcard;
+		downcard = card;
+		downsuit = Hand.suitOf(card);
+	}
+
+	private void remember(int seat, int card) {
+		lastCards[2 * seat] = lastCards[2 * seat + 1];
+		lastCards[2 * seat + 1] = card;
+	}
+
+	private boolean shouldDefend(int seat) {
+		if (Long.bitCount(hands[seat]) != 1)
+			return false;
+		for (int i = 2 * seat; i < 2 * seat + 2; i++)
+			if (lastCards[i] >= 0 && Hand.numOf(lastCards[i]) == 1)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Deal the next card of the pile, reshuffling the discard pile into
+	 * it when it runs out.
+	 *
+	 * @return index of the card, or -1 if there are no cards left
+	 */
+	private int deal() {
+		if (top == size) {
+			if (making >= 0 && ! undoReshuffled[making]) {
+				System.arraycopy(pile, 0, undoPile,
+				                 making * Deck.NUM_CARDS, Deck.NUM_CARDS);
+				undoReshuffled[making] = true;
+			}
+			long cards = discard;
+			top = 0;
+			size = 0;
+			while (cards != 0) {
+				pile[size++] = (byte) Long.numberOfTrailingZeros(cards);
+				cards &= cards - 1;
+			}
+			discard = 0;
+			shuffle();
+			if (size == 0)
+				return -1;
+		}
+		return pile[top++];
+	}
+
+	private void shuffle() {
+		for (int i = size - 1; i > top; i--) {
+			int j = top + rnd.nextInt(i - top + 1);
+			byte tmp = pile[i];
+			pile[i] = pile[j];
+			pile[j] = tmp;
+		}
+	}
+
+	private static int next(int seat) {
+		return (seat + 1) % NUM_SEATS;
+	}
+}
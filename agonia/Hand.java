@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package agonia;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * The cards of a player, kept as a bitmask with one bit per card.
+ *
+ * The bit of a card is Card.index(), so each suit takes 13 consecutive
+ * bits and a hand is always sorted by suit and num: walking the set bits
+ * from the lowest one (or iterating the hand) gives the cards in order,
+ * and lowest() and highest() give the first and last card of any subset
+ * in constant time. Nothing ever needs to sort a hand. Adding,
+ * removing and looking up a card are constant-time, and sets of cards
+ * (eg. all the cards that can be played) are plain masks that can be
+ * built with suitMask() and rankMask().
+ *
+ * The hand also keeps how many cards of each suit and of each num it
+ * holds and their points value, updated on every change, so that the
+ * dominant suit and the points of the hand are read, not counted.
+ */
+public class Hand implements Iterable<Card> {
+	private long mask; // bit Card.index() is set for each card held
+	private int[] suitCounts; // cards of each suit, by suit id - 1
+	private int[] rankCounts; // cards of each num, by num - 1
+	private int value;        // points value of the cards
+
+	//------------------Constant definitions----------------------
+	static final long ALL_CARDS = (1L << 52) - 1;
+	static final long SUIT_BITS = (1L << Deck.NUM_NUMS) - 1;
+	// one bit per suit, on the Aces
+	static final long RANK_BITS = 1L | 1L << 13 | 1L << 26 | 1L << 39;
+
+	//--------------------Constructor-----------------------------
+	public Hand() {
+		mask = 0;
+		suitCounts = new int[Deck.NUM_SUITS];
+		rankCounts = new int[Deck.NUM_NUMS];
+		value = 0;
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public long mask() { return mask; }
+	public int size() { return Long.bitCount(mask); }
+	public boolean isEmpty() { return mask == 0; }
+
+	public boolean contains(Card card) {
+		return (mask & 1L << card.index()) != 0;
+	}
+
+	/**
+	 * Add a card to the hand.
+	 *
+	 * @param card card to add
+	 * @return true if the card was not already in hand, else false
+	 */
+	public boolean add(Card card) {
+		long bit = 1L << card.index();
+		if ((mask & bit) != 0)
+			return false;
+		mask |= bit;
+		suitCounts[card.suit().id() - 1]++;
+		rankCounts[card.num() - 1]++;
+		value += card.value();
+		return true;
+	}
+
+	/**
+	 * Remove a card from the hand.
+	 *
+	 * @param card card to remove
+	 * @return true if the card was in hand, else false
+	 */
+	public boolean remove(Card card) {
+		long bit = 1L << card.index();
+		if ((mask & bit) == 0)
+			return false;
+		mask &= ~bit;
+		suitCounts[card.suit().id() - 1]--;
+		rankCounts[card.num() - 1]--;
+		value -= card.value();
+		return true;
+	}
+
+	public void clear() { set(0); }
+
+	/**
+	 * Replace the cards of the hand, eg. when restoring a checkpoint.
+	 *
+	 * @param cards mask of the new cards
+	 * @return nothing
+	 */
+	public void set(long cards) {
+		mask = cards & ALL_CARDS;
+		for (int s = 1; s <= Deck.NUM_SUITS; s++)
+			suitCounts[s - 1] = Long.bitCount(mask & suitMask(s));
+		for (int n = 1; n <= Deck.NUM_NUMS; n++)
+			rankCounts[n - 1] = Long.bitCount(mask & rankMask(n));
+		value = value(mask);
+	}
+
+	/**
+	 * Return how many cards of a suit are in hand.
+	 *
+	 * @param suit id of the suit, 1 to 4
+	 * @return number of cards
+	 */
+	public int suitCount(int suit) { return suitCounts[suit - 1]; }
+
+	/**
+	 * Return how many cards of a num are in hand.
+	 *
+	 * @param num num of the cards, 1 to 13
+	 * @return number of cards
+	 */
+	public int rankCount(int num) { return rankCounts[num - 1]; }
+
+	/**
+	 * Return the suit that appears most times in the hand, the same as
+	 * dominantSuit(mask()) but read from the counts.
+	 *
+	 * @return id of the dominant suit
+	 */
+	public int dominantSuit() {
+		int[] n = suitCounts;
+		int suit = 1;
+		int max = n[0];
+		if (n[1] > max) { suit = 2; max = n[1]; }
+		if (n[2] > max) { suit = 3; max = n[2]; }
+		if (n[3] > max) { suit = 4; }
+		return suit;
+	}
+
+	/**
+	 * Return the card of the hand that has the given index.
+	 *
+	 * @param index card index, as returned by Card.index()
+	 * @return the card or null if it is not in hand
+	 */
+	public Card get(int index) {
+		if ((mask & 1L << index) == 0)
+			return null;
+		return Card.of(index);
+	}
+
+	/**
+	 * Return the first card, in suit and num order, of a set of cards.
+	 *
+	 * @param cards mask of cards, should be a subset of the hand
+	 * @return the card with the lowest index or null if cards is empty
+	 */
+	public Card lowest(long cards) {
+		if (cards == 0)
+			return null;
+		return Card.of(Long.numberOfTrailingZeros(cards));
+	}
+
+	/**
+	 * Return the last card, in suit and num order, of a set of cards.
+	 *
+	 * @param cards mask of cards, should be a subset of the hand
+	 * @return the card with the highest index or null if cards is empty
+	 */
+	public Card highest(long cards) {
+		if (cards == 0)
+			return null;
+		return Card.of(63 - Long.numberOfLeadingZeros(cards));
+	}
+
+	/**
+	 * Return the points of all cards in hand.
+	 *
+	 * @return points value of the hand
+	 */
+	public int value() { return value; }
+
+	/**
+	 * Iterate over the cards, sorted by suit and num.
+	 *
+	 * @return an iterator over a snapshot of the hand
+	 */
+	public Iterator<Card> iterator() {
+		return new Iterator<Card>() {
+			private long rest = mask;
+
+			public boolean hasNext() {
+				return rest != 0;
+			}
+
+			public Card next() {
+				if (rest == 0)
+					throw new NoSuchElementException();
+				int i = Long.numberOfTrailingZeros(rest);
+				rest &= rest - 1;
+				return Card.of(i);
+			}
+		};
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Return the mask of all the cards of a suit.
+	 *
+	 * @param suit the suit, INVALID gives an empty mask
+	 * @return mask with the 13 bits of the suit set
+	 */
+	public static long suitMask(Card.Suit suit) {
+		return suitMask(suit.id());
+	}
+
+	/**
+	 * Return the mask of all the cards of a suit.
+	 *
+	 * @param suit id of the suit, 0 (INVALID) gives an empty mask
+	 * @return mask with the 13 bits of the suit set
+	 */
+	public static long suitMask(int suit) {
+		if (suit == 0)
+			return 0;
+		return SUIT_BITS << (suit - 1) * Deck.NUM_NUMS;
+	}
+
+	/**
+	 * Return the mask of all the cards with the same num.
+	 *
+	 * @param num num of the cards, 1 to 13
+	 * @return mask with one bit set in each suit
+	 */
+	public static long rankMask(int num) {
+		return RANK_BITS << num - 1;
+	}
+
+	/**
+	 * Return the cards of a set that can be played on a down card: the
+	 * Aces, the cards with the num of the down card and the cards of the
+	 * suit must be played.
+	 *
+	 * LegalMoves does the same over many sets at once.
+	 *
+	 * @param cards mask of cards
+	 * @param downcard index of the down card
+	 * @param downsuit id of the suit must be played
+	 * @return mask of the playable ones
+	 */
+	public static long playable(long cards, int downcard, int downsuit) {
+		return cards & (rankMask(1) | rankMask(numOf(downcard))
+		                | suitMask(downsuit));
+	}
+
+	/**
+	 * Return the suit that appears most times in a set of cards.
+	 *
+	 * On a tie the suit that comes first in Diamonds, Hearts, Spades,
+	 * Clubs order wins.
+	 *
+	 * @param cards mask of the cards
+	 * @return id of the dominant suit
+	 */
+	public static int dominantSuit(long cards) {
+		int suit = 1;
+		int max = Long.bitCount(cards & SUIT_BITS);
+		for (int s = 2; s <= Deck.NUM_SUITS; s++) {
+			int n = Long.bitCount(cards & suitMask(s));
+			if (n > max) {
+				max = n;
+				suit = s;
+			}
+		}
+		return suit;
+	}
+
+	/**
+	 * Sum the points of a set of cards, counting each rank at once.
+	 *
+	 * @param cards mask of the cards
+	 * @return points value of the cards
+	 */
+	public static int value(long cards) {
+		int points = 25 * Long.bitCount(cards & rankMask(1));
+		for (int n = 2; n <= 10; n++)
+			points += n * Long.bitCount(cards & rankMask(n));
+		points += 10 * Long.bitCount(cards & (rankMask(11)
+		                                      | rankMask(12)
+		                                      | rankMask(13)));
+		return points;
+	}
+
+	public static int numOf(int index) { return index % Deck.NUM_NUMS + 1; }
+	public static int suitOf(int index) { return index / Deck.NUM_NUMS + 1; }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package agonia;
+
+
+/**
+ * The cards that can be played in many games at once, one game per
+ * element of the arrays: Hand.playable() over batches, eg. of BatchEngine.
+ *
+ * The work is done by LegalMovesVector with the Vector API, several games
+ * per instruction, when it is compiled (`make vector', the module is
+ * still incubating in JDK 17 and stays out of the plain build) and the
+ * JVM is started with --add-modules jdk.incubator.vector. Otherwise, or
+ * with -Dagonia.scalar=true, a plain loop gives the same results.
+ */
+public final class LegalMoves {
+	// the vector kernel, null if it cannot be used
+	private static final Kernel VECTOR = vectorKernel();
+	public static final boolean VECTORIZED = VECTOR != null;
+
+	private LegalMoves() {}
+
+	/**
+	 * An implementation of playable().
+	 */
+	interface Kernel {
+		void playable(long[] hands, byte[] downcards, byte[] downsuits,
+		              long[] dst, int from, int to);
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Find the playable cards of the games of a range.
+	 *
+	 * dst may be hands, to replace each hand with its playable cards.
+	 *
+	 * @param hands mask of the cards in hand of each game
+	 * @param downcards index of the down card of each game
+	 * @param downsuits id of the suit must be played in each game
+	 * @param dst where to put the mask of the playable cards of each game
+	 * @param from first game
+	 * @param to game after the last one
+	 * @return nothing
+	 */
+	public static void playable(long[] hands, byte[] downcards,
+	                            byte[] downsuits, long[] dst,
+	                            int from, int to) {
+		if (VECTOR != null)
+			VECTOR.playable(hands, downcards, downsuits, dst, from, to);
+		else
+			scalar(hands, downcards, downsuits, dst, from, to);
+	}
+
+	/**
+	 * The same as playable(), a game at a time. LegalMovesVector uses it
+	 * for the games left over by the vectors too.
+	 *
+	 * @return nothing
+	 */
+	static void scalar(long[] hands, byte[] downcards, byte[] downsuits,
+	                   long[] dst, int from, int to) {
+		for (int g = from; g < to; g++)
+			dst[g] = Hand.playable(hands[g], downcards[g], downsuits[g]);
+	}
+
+	/**
+	 * Load LegalMovesVector, if it was compiled and the Vector API
+	 * module is present.
+	 *
+	 * @return the kernel, or null to use scalar()
+	 */
+	static Kernel vectorKernel() {
+		if (Boolean.getBoolean("agonia.scalar")
+		|| ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+			return null;
+		try {
+			return (Kernel) Class.forName("agonia.LegalMovesVector")
+			                     .getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null; // not compiled, see `make vector'
+		}
+	}
+}
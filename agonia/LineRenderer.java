@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.io.PrintStream;
+import java.util.Formatter;
+
+
+/**
+ * Renders plain text lines, for clients on the other end of a connection.
+ *
+ * Nothing but printable text and newlines is sent: no escape sequences, no
+ * backspaces and no spinning shuffle. Text is gathered in memory and
+ * written to the stream in one go on flush().
+ */
+public class LineRenderer implements Renderer {
+	protected PrintStream out;
+	protected StringBuilder buffer; // text not written yet
+	private Formatter formatter;    // formats into buffer
+
+	//--------------------Constructor-----------------------------
+
+	public LineRenderer(PrintStream out) {
+		this.out = out;
+		this.buffer = new StringBuilder(1024);
+		this.formatter = new Formatter(buffer);
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public void print(String text) { buffer.append(text); }
+	public void println(String text) { buffer.append(text).append('\n'); }
+	public void println() { buffer.append('\n'); }
+
+	public void printf(String format, Object... args) {
+		formatter.format(format, args);
+	}
+
+	/**
+	 * Display a set of cards as a list of their shortdescs,
+	 * eg. ['AD', '7H', 'KS'].
+	 *
+	 * @param cards mask of the cards, as kept by Hand
+	 * @return nothing
+	 */
+	public void cards(long cards) {
+		buffer.append('[');
+		for (long i = cards; i != 0; i &= i - 1) {
+			if (i != cards)
+				buffer.append(", ");
+			buffer.append('\'');
+			card(Card.of(Long.numberOfTrailingZeros(i)));
+			buffer.append('\'');
+		}
+		buffer.append(']');
+	}
+
+	/**
+	 * Display the shortdesc of a card.
+	 *
+	 * @param card the card
+	 * @return nothing
+	 */
+	protected void card(Card card) {
+		buffer.append(card.shortdesc());
+	}
+
+	public void shuffle() {
+		buffer.append("Shuffling the deck...\ndone\n\n");
+	}
+
+	public void clear() {}
+
+	public void flush() {
+		if (buffer.length() > 0) {
+			out.append(buffer);
+			buffer.setLength(0);
+		}
+		out.flush();
+	}
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+
+/**
+ * Instrumentation of the game's hot paths: turns, CPU decisions, 7 loops
+ * and reshuffles.
+ *
+ * Metrics are off unless the JVM is started with -Dagonia.metrics=true.
+ * ENABLED is a constant, so when it is false the JIT drops every hook
+ * and the game pays nothing. When on, each hook adds to a latency
+ * histogram, commits a JFR event (recorded only while a flight recording
+ * is running) and the totals are published as the MXBean
+ * agonia:type=Metrics, eg. for jconsole.
+ *
+ * The hooks are used as
+ *
+ *	long start = Metrics.ENABLED ? System.nanoTime() : 0;
+ *	...
+ *	if (Metrics.ENABLED)
+ *		Metrics.turn(start);
+ */
+public final class Metrics {
+	public static final boolean ENABLED = Boolean.getBoolean("agonia.metrics");
+
+	static final Histogram TURNS = new Histogram();
+	static final Histogram DECISIONS = new Histogram();
+	static final Histogram SEVEN_LOOPS = new Histogram();
+	static final Histogram RESHUFFLES = new Histogram();
+	// 7 loops by the number of cards pulled, 2 to 2 * NUM_SUITS + 2
+	static final LongAdder[] SEVEN_CHAINS = adders(2 * Deck.NUM_SUITS + 3);
+
+	static {
+		if (ENABLED)
+			register();
+	}
+
+	private Metrics() {}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * A player's turn, Player.play(), has ended.
+	 *
+	 * @param start System.nanoTime() at the start of the turn
+	 * @return nothing
+	 */
+	static void turn(long start) {
+		long latency = TURNS.add(start);
+		TurnEvent event = new TurnEvent();
+		if (event.isEnabled()) {
+			event.latency = latency;
+			event.commit();
+		}
+	}
+
+	/**
+	 * A CPU player has chosen a card, PlayerCPU.chooseCard().
+	 *
+	 * @param start System.nanoTime() before choosing
+	 * @return nothing
+	 */
+	static void decision(long start) {
+		long latency = DECISIONS.add(start);
+		DecisionEvent event = new DecisionEvent();
+		if (event.isEnabled()) {
+			event.latency = latency;
+			event.commit();
+		}
+	}
+
+	/**
+	 * A 7 loop, Player.doSevenLoop(), has ended.
+	 *
+	 * @param start System.nanoTime() at the start of the loop
+	 * @param pulled number of cards the loser of the loop had to pull
+	 * @return nothing
+	 */
+	static void sevenLoop(long start, int pulled) {
+		long latency = SEVEN_LOOPS.add(start);
+		SEVEN_CHAINS[Math.min(pulled, SEVEN_CHAINS.length - 1)].increment();
+		SevenLoopEvent event = new SevenLoopEvent();
+		if (event.isEnabled()) {
+			event.latency = latency;
+			event.pulled = pulled;
+			event.commit();
+		}
+	}
+
+	/**
+	 * The discard pile went back to the deck, Deck.reshuffle().
+	 *
+	 * @param start System.nanoTime() before reshuffling
+	 * @param cards number of cards in the deck after the reshuffle
+	 * @return nothing
+	 */
+	static void reshuffle(long start, int cards) {
+		long latency = RESHUFFLES.add(start);
+		ReshuffleEvent event = new ReshuffleEvent();
+		if (event.isEnabled()) {
+			event.latency = latency;
+			event.cards = cards;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Return a summary of all metrics, one line each.
+	 *
+	 * @return the summary
+	 */
+	public static String summary() {
+		StringBuilder s = new StringBuilder();
+		s.append("Turns:       ").append(TURNS).append('\n');
+		s.append("Decisions:   ").append(DECISIONS).append('\n');
+		s.append("7 loops:     ").append(SEVEN_LOOPS).append('\n');
+		s.append("Reshuffles:  ").append(RESHUFFLES).append('\n');
+		s.append("Cards pulled after a 7 loop:");
+		for (int i = 2; i < SEVEN_CHAINS.length; i += 2)
+			s.append(' ').append(i).append(':')
+			 .append(SEVEN_CHAINS[i].sum());
+		return s.append('\n').toString();
+	}
+
+	private static void register() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+			        new Bean(), new ObjectName("agonia:type=Metrics"));
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static LongAdder[] adders(int n) {
+		LongAdder[] adders = new LongAdder[n];
+		for (int i = 0; i < n; i++)
+			adders[i] = new LongAdder();
+		return adders;
+	}
+
+	/**
+	 * Latencies in buckets of powers of two nanoseconds, safe to add to
+	 * from many threads.
+	 */
+	static class Histogram {
+		private LongAdder[] buckets = adders(64); // by floor(log2(ns))
+		private LongAdder total = new LongAdder(); // nanoseconds
+
+		/**
+		 * Add the latency of something that started at a given time.
+		 *
+		 * @param start System.nanoTime() at the start
+		 * @return the latency in nanoseconds
+		 */
+		long add(long start) {
+			long latency = Math.max(System.nanoTime() - start, 1);
+			buckets[63 - Long.numberOfLeadingZeros(latency)].increment();
+			total.add(latency);
+			return latency;
+		}
+
+		long count() {
+			long count = 0;
+			for (LongAdder i : buckets)
+				count += i.sum();
+			return count;
+		}
+
+		long[] counts() {
+			long[] counts = new long[buckets.length];
+			for (int i = 0; i < counts.length; i++)
+				counts[i] = buckets[i].sum();
+			return counts;
+		}
+
+		double mean() {
+			long count = count();
+			return count == 0 ? 0 : (double) total.sum() / count;
+		}
+
+		/**
+		 * Return a latency no less than a fraction of all latencies,
+		 * the upper bound of its bucket.
+		 *
+		 * @param q the fraction, 0 to 1
+		 * @return the latency in nanoseconds, 0 if there are none
+		 */
+		long percentile(double q) {
+			long[] counts = counts();
+			long count = 0;
+			for (long i : counts)
+				count += i;
+			long rank = (long) Math.ceil(q * count);
+			for (int i = 0; i < counts.length; i++) {
+				rank -= counts[i];
+				if (rank <= 0 && counts[i] > 0)
+					return (2L << i) - 1;
+			}
+			return 0;
+		}
+
+		void reset() {
+			for (LongAdder i : buckets)
+				i.reset();
+			total.reset();
+		}
+
+		public String toString() {
+			return String.format("%d, mean %.0f ns, p50 %d ns, " +
+			                     "p99 %d ns", count(), mean(),
+			                     percentile(0.5), percentile(0.99));
+		}
+	}
+
+	//------------------------JMX----------------------------------
+
+	/**
+	 * The metrics as published over JMX. Latencies are in nanoseconds,
+	 * histograms have a count for each power of two.
+	 */
+	public interface MetricsMXBean {
+		long getTurns();
+		long getDecisions();
+		double getDecisionsPerSecond();
+		long getSevenLoops();
+		long getReshuffles();
+		long[] getSevenChains();
+		double getMeanTurnLatency();
+		long getTurnLatencyP99();
+		double getMeanDecisionLatency();
+		long getDecisionLatencyP99();
+		long[] getTurnLatencyHistogram();
+		long[] getDecisionLatencyHistogram();
+		void reset();
+	}
+
+	private static class Bean implements MetricsMXBean {
+		private long lastDecisions; // decisions at the last rate asked
+		private long lastTime = System.nanoTime();
+
+		public long getTurns() { return TURNS.count(); }
+		public long getDecisions() { return DECISIONS.count(); }
+		public long getSevenLoops() { return SEVEN_LOOPS.count(); }
+		public long getReshuffles() { return RESHUFFLES.count(); }
+		public double getMeanTurnLatency() { return TURNS.mean(); }
+		public long getTurnLatencyP99() { return TURNS.percentile(0.99); }
+
+		public double getMeanDecisionLatency() {
+			return DECISIONS.mean();
+		}
+
+		public long getDecisionLatencyP99() {
+			return DECISIONS.percentile(0.99);
+		}
+
+		public long[] getTurnLatencyHistogram() { return TURNS.counts(); }
+
+		public long[] getDecisionLatencyHistogram() {
+			return DECISIONS.counts();
+		}
+
+		public long[] getSevenChains() {
+			long[] chains = new long[SEVEN_CHAINS.length];
+			for (int i = 0; i < chains.length; i++)
+				chains[i] = SEVEN_CHAINS[i].sum();
+			return chains;
+		}
+
+		/**
+		 * Return the rate of decisions since the last time it was
+		 * asked for.
+		 */
+		public synchronized double getDecisionsPerSecond() {
+			long decisions = DECISIONS.count();
+			long now = System.nanoTime();
+			double rate = (decisions - lastDecisions) * 1e9
+			              / Math.max(now - lastTime, 1);
+			lastDecisions = decisions;
+			lastTime = now;
+			return rate;
+		}
+
+		public void reset() {
+			TURNS.reset();
+			DECISIONS.reset();
+			SEVEN_LOOPS.reset();
+			RESHUFFLES.reset();
+			for (LongAdder i : SEVEN_CHAINS)
+				i.reset();
+		}
+	}
+
+	//------------------------JFR----------------------------------
+
+	@Name("agonia.Turn")
+	@Label("Turn")
+	@Category("Agonia")
+	@Description("A player's turn")
+	static class TurnEvent extends Event {
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+	}
+
+	@Name("agonia.Decision")
+	@Label("CPU Decision")
+	@Category("Agonia")
+	@Description("A CPU player choosing a card")
+	static class DecisionEvent extends Event {
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+	}
+
+	@Name("agonia.SevenLoop")
+	@Label("7 Loop")
+	@Category("Agonia")
+	@Description("Players answering 7 cards with 7 cards")
+	static class SevenLoopEvent extends Event {
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+
+		@Label("Cards Pulled")
+		int pulled;
+	}
+
+	@Name("agonia.Reshuffle")
+	@Label("Reshuffle")
+	@Category("Agonia")
+	@Description("The discard pile going back to the deck")
+	static class ReshuffleEvent extends Event {
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+
+		@Label("Cards")
+		int cards;
+	}
+}
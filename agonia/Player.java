@@ -17,77 +17,203 @@
 
 package agonia;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 
 public class Player {
-	CardArray cards;
+	Hand cards;
+	Card[] lastCards; // last two cards played
 	int points;
+	Renderer out;     // where messages go
+	String name;      // how messages call the player
+	Player next;      // player on the left, who plays after this one
+	int seat;         // place at the table, see GameEngine
 
 	public Player() {
-		cards = new CardArray();
+		cards = new Hand();
+		lastCards = new Card[] {null, null};
 		points = 0;
+		out = Renderer.NONE;
+		name = "Player";
+		next = this;
 	}
 
-	public void play(Deck deck, Player player) {}
-	public boolean playFirstCard(Deck deck, Player player) { return false; }
-
 	/**
-	 * Check whether human or cpu can and want to play a 7 on 7.
+	 * Play a turn.
 	 *
-	 * When a player plays a 7 card his opponent must pull 2 cards. If the
-	 * opponent has a 7 card too he can play it and player will have to
-	 * pull 4 cards. This can be continued as long as a player has no other
-	 * 7 cards. For each 7 card played the opponent have to pull 2 more
-	 * cards than the first player had to pull.
+	 * @param deck deck of cards
+	 * @param opponent the next player, the one a 7 or an 8 is played on
+	 * @return the player to play the next turn
+	 */
+	public Player play(Deck deck, Player opponent) { return opponent; }
+
+	/**
+	 * Make the appropriate manipulations if first card is special, the
+	 * player being the one to play first.
 	 *
 	 * @param deck deck of cards
-	 * @param playerHuman human player
-	 * @param playerCPU CPU player
-	 * @param plCount int index, should be 0 when called from a PlayerHuman,
-	 *                1 when called from a PlayerCPU
-	 * @return the number of cards pulled by a player
+	 * @param opponent the next player
+	 * @return the player to play the first turn
 	 */
-	public static int doSevenLoop(Deck deck,
-	                              PlayerHuman playerHuman,
-	                              PlayerCPU playerCPU,
-	                              int plCount) {
-		Card card;
-		int n = 2; // number of cards will be pulled
-		int cp; // current player
+	public Player playFirstCard(Deck deck, Player opponent) { return this; }
 
-		while (true) {
-			cp = plCount % 2;
-			if (cp == 0)
-				card = playerCPU.chooseSeven();
-			else
-				card = playerHuman.chooseSeven();
+	public Card chooseSeven(Deck deck) { return null; }
+	public void printEndTurn() {}
+	public String getName() { return name; }
 
-			if (card == null) {
-				break;
-			} else {
-				deck.setDowncard(card);
-				n += 2;
-			}
-			plCount++;
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Pull a card from the deck into the hand.
+	 *
+	 * @param deck deck of cards
+	 * @return the card pulled, or null if there are no cards left
+	 */
+	public Card pull(Deck deck) {
+		Card card = deck.dealOneCard();
+		if (card != null) {
+			cards.add(card);
+			deck.pulled(this);
 		}
-		cp = (plCount + 1) % 2;
+		return card;
+	}
+
+	/**
+	 * Append card to lastCards and remove the first card.
+	 *
+	 * @param card card to add
+	 * @return nothing
+	 */
+	public void addToLastCards(Card card) {
+		lastCards[0] = lastCards[1];
+		lastCards[1] = card;
+	}
 
-		if (cp == 0) {
-			System.out.printf("CPU played a 7. You pull %d cards.%n", n);
+	/**
+	 * Display that the player played an 8 and who looses a turn.
+	 *
+	 * @param skipped the player that looses a turn
+	 * @return nothing
+	 */
+	void printEight(Player skipped) {
+		if (! out.isVisible())
+			return;
+		if (this instanceof PlayerHuman && skipped.next == this)
+			out.println("You played an 8. Play again.\n");
+		else if (skipped instanceof PlayerHuman)
+			out.printf("%s played an 8. You loose your turn.%n%n",
+			           name);
+		else
+			out.printf("%s played an 8. %s looses its turn.%n%n",
+			           name, skipped.name);
+	}
+
+	/**
+	 * Display who played the last 7 card and how many cards the player
+	 * pulls.
+	 *
+	 * @param last player of the last 7 card
+	 * @param n number of cards pulled
+	 * @return nothing
+	 */
+	void printSeven(Player last, int n) {
+		if (! out.isVisible())
+			return;
+		if (this instanceof PlayerHuman) {
+			out.printf("%s played a 7. You pull %d cards.%n",
+			           last.name, n);
+		} else if (last instanceof PlayerHuman) {
+			out.print("\nYou played a 7. ");
+			out.printf("%s will pull %d cards.%n", name, n);
 		} else {
-			System.out.print("\nYou played a 7. ");
-			System.out.printf("CPU will pull %d cards.%n", n);
+			out.printf("%s played a 7. %s will pull %d cards.%n",
+			           last.name, name, n);
 		}
+	}
+
+	/**
+	 * Check whether players can and want to play a 7 on 7.
+	 *
+	 * When a player plays a 7 card the next player must pull 2 cards. If
+	 * he has a 7 card too he can play it and the player after him will
+	 * have to pull 4 cards. This goes on around the table as long as
+	 * players answer with 7 cards, each 7 card adding 2 more cards to
+	 * pull. The one that pulls plays next.
+	 *
+	 * A player that answers with his last card wins, and nobody pulls.
+	 *
+	 * @param deck deck of cards
+	 * @param responder player that must answer the 7 card first
+	 * @param player player of the 7 card
+	 * @return the player that pulled the cards, or the one that won
+	 */
+	public static Player doSevenLoop(Deck deck, Player responder,
+	                                 Player player) {
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		Card card;
+		int n = 2; // number of cards will be pulled
+		Player cp = responder; // current player
+		Player last = player;  // player of the last 7 card
 
-		for (int i = 0; i < n; i++) {
-			if (cp == 0)
-				playerHuman.cards.add(deck.dealOneCard(
-				                playerHuman, playerCPU));
-			else
-				playerCPU.cards.add(deck.dealOneCard(
-				                playerHuman, playerCPU));
+		while ((card = cp.chooseSeven(deck)) != null) {
+			deck.setDowncard(card);
+			if (cp.cards.isEmpty()) {
+				if (Metrics.ENABLED)
+					Metrics.sevenLoop(start, 0);
+				return cp;
+			}
+			n += 2;
+			last = cp;
+			cp = cp.next;
 		}
 
-		return n;
+		// cp is the one that could not answer, so he pulls the cards
+		cp.printSeven(last, n);
+
+		for (int i = 0; i < n; i++)
+			if (cp.pull(deck) == null) // every card is in the hands
+				break;
+
+		if (Metrics.ENABLED)
+			Metrics.sevenLoop(start, n);
+		return cp;
+	}
+
+	/**
+	 * Write the points, the cards and the last cards played of the player,
+	 * 14 bytes.
+	 *
+	 * @param dst where to write
+	 * @return nothing
+	 * @throws IOException if writing fails
+	 */
+	public void save(DataOutput dst) throws IOException {
+		dst.writeInt(points);
+		dst.writeLong(cards.mask());
+		for (Card i : lastCards)
+			dst.writeByte(i == null ? -1 : i.index());
+	}
+
+	/**
+	 * Read back what save() wrote.
+	 *
+	 * @param src where to read from
+	 * @return nothing
+	 * @throws IOException if reading fails or the data is invalid
+	 */
+	public void load(DataInput src) throws IOException {
+		points = src.readInt();
+		cards.set(src.readLong() & Hand.ALL_CARDS);
+		for (int i = 0; i < lastCards.length; i++) {
+			int index = src.readByte();
+			if (index < -1 || index >= Deck.NUM_CARDS)
+				throw new IOException("Invalid card: " + index);
+			lastCards[i] = index < 0 ? null : Card.of(index);
+		}
 	}
 
 	/**
@@ -96,9 +222,7 @@ public class Player {
 	 * @return points added
 	 */
 	public int addPoints() {
-		int points = 0;
-		for (Card i : cards)
-			points += i.value();
+		int points = cards.value();
 
 		this.points += points;
 		return points;
@@ -17,13 +17,94 @@
 
 package agonia;
 
-import java.util.Collections;
-
 
 public class PlayerCPU extends Player {
-	// just a wrapper to the real function
-	public void play(Deck deck, Player playerHuman) {
-		play(deck, (PlayerHuman) playerHuman);
+	SampleWriter samples; // where the decisions go, null for nowhere
+	double[] weights;     // weights of pickCard() and pickSuit(), null
+	                      // for the rules as written
+	CardTracker tracker;  // what it knows of the next player's cards,
+	                      // null to keep no track
+
+	//------------------Constant definitions----------------------
+	// features of a card to play, see pickCard(long, int, int, boolean,
+	// double[])
+	static final int W_ACE = 0;          // the card is an Ace
+	static final int W_DOMINANCE = 1;    // playable cards of its suit
+	static final int W_VALUE = 2;        // points value of the card
+	static final int W_SEVEN = 3;        // the card is a 7
+	static final int W_EIGHT = 4;        // the card is an 8
+	static final int W_KEEP = 5;         // cards of its suit kept in hand
+	static final int W_DEFEND_SEVEN = 6; // a 7 of the suit when defending
+	static final int W_DEFEND_ACE = 7;   // an Ace when defending
+	// features of a suit to set, see pickSuit(long, int, boolean, double[])
+	static final int W_SUIT_COUNT = 8;   // cards of the suit in hand
+	static final int W_SUIT_VALUE = 9;   // points of the suit in hand
+	static final int W_SUIT_PREV = 10;   // the previous suit when defending
+	static final int NUM_WEIGHTS = 11;
+
+	static final String[] WEIGHT_NAMES = {
+		"ace", "dominance", "value", "seven", "eight", "keep",
+		"defend-seven", "defend-ace",
+		"suit-count", "suit-value", "suit-prev"
+	};
+
+	/**
+	 * Weights that rank cards and suits like the rules as written: a 7
+	 * and then an Ace when defending, the dominant suit, the card with
+	 * the higher points value, Aces last. They differ only when two suits
+	 * are equally dominant, taking the one with the more valuable card
+	 * instead of the first one.
+	 */
+	static final double[] DEFAULT_WEIGHTS = {
+		-100, 30, 1, 0, 0, 0,
+		1000, 500,
+		1, 0, -100
+	};
+
+	//--------------------Constructors----------------------------
+
+	public PlayerCPU() {
+		super();
+		name = "CPU";
+	}
+
+	/**
+	 * Create a CPU that ranks its choices with weights instead of the
+	 * rules as written.
+	 *
+	 * @param weights NUM_WEIGHTS weights, see DEFAULT_WEIGHTS
+	 */
+	public PlayerCPU(double[] weights) {
+		this();
+		if (weights.length != NUM_WEIGHTS)
+			throw new IllegalArgumentException(
+			        "Expected " + NUM_WEIGHTS + " weights");
+		this.weights = weights.clone();
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	/**
+	 * Write every decision from now on as a training sample.
+	 *
+	 * @param samples writer of the samples, null to stop
+	 * @return nothing
+	 */
+	public void setSampleWriter(SampleWriter samples) {
+		this.samples = samples;
+	}
+
+	/**
+	 * Keep track of the cards played, pulled and folded on, and play
+	 * the cards and set the suits the next player cannot answer when
+	 * there are any, see pickCard(long, int, int, boolean, long). Only
+	 * the rules as written use it, not the weights.
+	 *
+	 * @param on true to keep track, false to stop
+	 * @return nothing
+	 */
+	public void setTracking(boolean on) {
+		tracker = on ? new CardTracker(this) : null;
 	}
 
 	/**
@@ -31,90 +112,89 @@ public class PlayerCPU extends Player {
 	 * on it.
 	 *
 	 * @param deck deck of cards
-	 * @param playerHuman human player
-	 * @return nothing
+	 * @param opponent the next player
+	 * @return the player to play the next turn
 	 */
-	public void play(Deck deck, PlayerHuman playerHuman) {
-		while (true) {
-			Card card = chooseCard(deck, playerHuman);
-			if (card == null) {
-				System.out.println("CPU folds.");
-				break;
-			}
+	public Player play(Deck deck, Player opponent) {
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		Card card = chooseCard(deck, opponent);
+		if (Metrics.ENABLED)
+			Metrics.decision(start);
+		Player next = opponent;
 
-			cards.remove(card);
-			System.out.print("CPU played: ");
-			System.out.println(card.shortdesc());
-			Card.Suit prevSuit = deck.downsuit();
-			deck.setDowncard(card);
-
-			switch (card.num()) {
-			case 1:
-				deck.setDownsuit(chooseSuit(
-				                 deck, prevSuit, playerHuman));
-				System.out.printf("CPU set %s suit.%n",
-				                  deck.downsuit());
-				break;
-			case 7:
-				int n = doSevenLoop(deck, playerHuman, this, 1);
-				if ((n == 4 || n == 8) && ! playerHuman.hasWon()) {
-					// human played last
-					System.out.println();
-					continue;
-				}
-				break;
-			case 8:
-				System.out.println("CPU played an 8. " +
-				                   "You loose your turn.\n");
-				continue;
-			}
+		if (card == null) {
+			deck.folded(this);
+			out.print(name);
+			out.println(" folds.");
+			printEndTurn();
+			return next;
+		}
+
+		cards.remove(card);
+		addToLastCards(card);
+		out.print(name);
+		out.print(" played: ");
+		out.println(card.shortdesc());
+		Card.Suit prevSuit = deck.downsuit();
+		deck.setDowncard(card);
+
+		switch (card.num()) {
+		case 1:
+			deck.setDownsuit(chooseSuit(deck, prevSuit, opponent));
+			if (out.isVisible())
+				out.printf("%s set %s suit.%n", name, deck.downsuit());
+			break;
+		case 7:
+			next = doSevenLoop(deck, opponent, this);
+			break;
+		case 8:
+			next = opponent.next;
+			printEight(opponent);
 			break;
 		}
 		printEndTurn();
-	}
-
-	// just a wrapper to the real function
-	public boolean playFirstCard(Deck deck, Player playerHuman) {
-		return playFirstCard(deck, (PlayerHuman) playerHuman);
+		return next;
 	}
 
 	/**
 	 * Make the appropriate manipulations if first card is special.
 	 *
 	 * @param deck deck of cards
-	 * @param playerHuman human player
-	 * @return true if player looses his turn, else false
+	 * @param opponent the next player
+	 * @return the player to play the first turn
 	 */
-	public boolean playFirstCard(Deck deck, PlayerHuman playerHuman) {
+	public Player playFirstCard(Deck deck, Player opponent) {
 		switch(deck.downcard().num()) {
 		case 1:
-			System.out.printf("First card is %s.%n",
-			                   deck.downcard().shortdesc());
-			deck.setDownsuit(chooseSuit(deck, null, playerHuman));
-			System.out.printf("CPU set %s suit.%n", deck.downsuit());
+			out.print("First card is ");
+			out.print(deck.downcard().shortdesc());
+			out.println(".");
+			deck.setDownsuit(chooseSuit(deck, null, opponent));
+			if (out.isVisible())
+				out.printf("%s set %s suit.%n", name, deck.downsuit());
 			break;
 		case 7:
-			System.out.printf("First card is %s.%n",
-			                   deck.downcard().shortdesc());
-			int n = doSevenLoop(deck, playerHuman, this, 0);
-			if (n == 4 || n == 8) {// cpu played last
+			out.print("First card is ");
+			out.print(deck.downcard().shortdesc());
+			out.println(".");
+			Player next = doSevenLoop(deck, this, opponent);
+			if (next != this)
 				printEndTurn();
-				return true;
-			}
-			break;
+			return next;
 		case 8:
-			System.out.printf("First card is %s. " +
-			                  "CPU looses its turn.%n%n",
-			                  deck.downcard().shortdesc());
-			return true;
+			if (out.isVisible())
+				out.printf("First card is %s. " +
+				           "%s looses its turn.%n%n",
+				           deck.downcard().shortdesc(), name);
+			return opponent;
 		}
-		return false;
+		return this;
 	}
 
 	/**
 	 * Decide which card is the most suitable to play.
 	 *
-	 * If human played an Ace recently and has only one card, cpu must
+	 * If opponent played an Ace recently and has only one card, cpu must
 	 * prevent him from winning the game. In that case play a 7 card if
 	 * possible (to force him pull another 2 cards) else an Ace card
 	 * (to change the current suit), if any. If CPU cannot do anything to
@@ -129,60 +209,38 @@ public class PlayerCPU extends Player {
 	 * it if possible.
 	 *
 	 * @param deck deck of cards
-	 * @param playerHuman human player
+	 * @param opponent the other player
 	 * @return the card that CPU decided to play,
 	 *	   or null if CPU cannot play a card
 	 */
-	public Card chooseCard(Deck deck, PlayerHuman playerHuman) {
-		CardArray playableCards = new CardArray();
-		CardArray aceCards = new CardArray();
-
-		Agonia.sortCards(cards);
-
-		for (Card i : cards) {
-			if (i.num() == 1)
-				aceCards.add(i);
-			else if (i.num() == deck.downcard().num()
-			|| i.suit() == deck.downsuit())
-				playableCards.add(i);
-		}
-
-		/* Reverse cards in order cards with higher points value
-		   to be played first. */
-		Collections.reverse(playableCards);
+	public Card chooseCard(Deck deck, Player opponent) {
+		boolean defend = shouldDefend(opponent);
+		int i;
+		if (weights != null)
+			i = pickCard(cards.mask(), deck.downcard().index(),
+			             deck.downsuit().id(), defend, weights);
+		else if (tracker != null)
+			i = pickCard(cards.mask(), deck.downcard().index(),
+			             deck.downsuit().id(), defend, track(deck));
+		else
+			i = pickCard(cards.mask(), deck.downcard().index(),
+			             deck.downsuit().id(), defend);
+		if (samples != null)
+			samples.add(SampleWriter.CARD, cards.mask(), deck, opponent,
+			            defend, i >= 0 ? i : GameState.PULL);
+		if (i >= 0)
+			return Card.of(i);
 
-		if (! playableCards.isEmpty()) {
-			/* Check if human played an Ace recently.
-			   If so, try to prevent him from winning the game
-			   by playing a Seven or an Ace. */
-			for (Card i : playerHuman.lastCards) {
-				if (playerHuman.cards.size() == 1
-				&& i != null && i.num() == 1) {
-					for (Card x : playableCards) {
-						if (x.num() == 7
-						&& x.suit() == deck.downsuit())
-							return x;
-					}
-					if (! aceCards.isEmpty())
-						return aceCards.get(0);
-				}
-			}
-			Card.Suit mSuit = Agonia.findDominantSuit(playableCards);
-			for (Card i : playableCards)
-				if (i.suit() == mSuit)
-					return i;
-		}
-		if (aceCards.isEmpty()) {
-			Card card = deck.dealOneCard(this, playerHuman);
-			cards.add(card);
-			System.out.println("CPU pulled a card.");
-			if (card.num() == 1
-			|| card.suit() == deck.downsuit()
-			|| card.num() == deck.downcard().num())
-				return card;
+		Card card = pull(deck);
+		if (card == null) // nothing to pull, fold
 			return null;
-		}
-		return aceCards.get(0);
+		out.print(name);
+		out.println(" pulled a card.");
+		boolean playable = deck.isPlayable(card);
+		if (samples != null)
+			samples.add(SampleWriter.PULLED, cards.mask(), deck, opponent,
+			            defend, playable ? card.index() : GameState.FOLD);
+		return playable ? card : null;
 	}
 
 	/**
@@ -190,58 +248,69 @@ public class PlayerCPU extends Player {
 	 *
 	 * @param deck the deck
 	 * @param prevSuit suit of the last but one card played
-	 * @param playerhuman human player
+	 * @param opponent the other player
 	 * @return suit decided to set
 	 */
 	public Card.Suit chooseSuit(Deck deck,
 		                    Card.Suit prevSuit,
-		                    PlayerHuman playerHuman) {
-		boolean shouldAvoid = false;
-		for (Card i : playerHuman.lastCards) {
-			if (playerHuman.cards.size() == 1
-			&& i != null && i.num() == 1)
-				shouldAvoid = true;
-		}
-
-		if (! shouldAvoid)
-			return Agonia.findDominantSuit(cards);
-
-		CardArray tempCards = new CardArray();
-		for (Card i : cards)
-			if (! (i.suit() == prevSuit))
-				tempCards.add(i);
-
-		return Agonia.findDominantSuit(tempCards);
+		                    Player opponent) {
+		int prev = prevSuit == null ? 0 : prevSuit.id();
+		boolean defend = shouldDefend(opponent);
+		int suit;
+		if (weights != null)
+			suit = pickSuit(cards.mask(), prev, defend, weights);
+		else if (tracker != null)
+			suit = pickSuit(cards.mask(), prev, defend, track(deck));
+		else if (! defend) // what pickSuit() gives, kept by the hand
+			suit = cards.dominantSuit();
+		else
+			suit = pickSuit(cards.mask(), prev, defend);
+		if (samples != null)
+			samples.add(SampleWriter.SUIT, cards.mask(), deck, opponent,
+			            defend, suit);
+		return Card.intToSuit(suit);
 	}
 
 	/**
 	 * Check if cpu can play a 7 card.
 	 *
+	 * @param deck deck of cards
 	 * @return the 7 card that CPU decided to play,
 	 *	   or null if CPU cannot play a card
 	 */
-	public Card chooseSeven() {
-		CardArray sevenCards = new CardArray();
-		for (Card i : cards)
-			if (i.num() == 7)
-				sevenCards.add(i);
-		if (sevenCards.isEmpty())
+	public Card chooseSeven(Deck deck) {
+		int i = cards.rankCount(7) == 0 ? -1 : pickSeven(cards.mask());
+		if (samples != null)
+			samples.add(SampleWriter.SEVEN, cards.mask(), deck, next,
+			            shouldDefend(next), i >= 0 ? i : GameState.PULL);
+		if (i < 0)
 			return null;
 
-		Card.Suit mSuit = Agonia.findDominantSuit(sevenCards);
-		for (Card i : sevenCards)
-			if (i.suit() == mSuit) {
-				cards.remove(i);
-				System.out.println("\nCPU played: " +
-				                   i.shortdesc());
-				return i;
-			}
-		return null;
+		Card card = Card.of(i);
+		cards.remove(card);
+		addToLastCards(card);
+		out.println();
+		out.print(name);
+		out.print(" played: ");
+		out.println(card.shortdesc());
+		return card;
+	}
+
+	/**
+	 * Track the round of a deck, if not yet, and return what the next
+	 * player may hold.
+	 *
+	 * @param deck deck of the round
+	 * @return mask of the cards the next player may hold
+	 */
+	private long track(Deck deck) {
+		tracker.track(deck);
+		return tracker.possible();
 	}
 
 	public void printEndTurn() {
-		System.out.println("---------------------------------" +
-		                   "-------------------------------");
+		out.println("---------------------------------" +
+		            "-------------------------------");
 	}
 
 	/**
@@ -251,9 +320,263 @@ public class PlayerCPU extends Player {
 	 */
 	public boolean hasWon() {
 		if (super.hasWon()) {
-			System.out.println("CPU won the round!");
+			out.print(name);
+			out.println(" won the round!");
 			return true;
 		}
 		return false;
 	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Check if opponent played an Ace recently and has only one card
+	 * left, in which case cpu must try to prevent him from winning.
+	 *
+	 * @param opponent the other player
+	 * @return true if cpu should defend, else false
+	 */
+	static boolean shouldDefend(Player opponent) {
+		if (opponent.cards.size() != 1)
+			return false;
+		for (Card i : opponent.lastCards)
+			if (i != null && i.num() == 1)
+				return true;
+		return false;
+	}
+
+	/**
+	 * The decision of chooseCard(), made on card masks and indexes.
+	 *
+	 * @param hand mask of the cards in hand
+	 * @param downcard index of the down card
+	 * @param downsuit id of the suit must be played
+	 * @param defend true if cpu should defend, see shouldDefend()
+	 * @return index of the card to play, or -1 if a card must be pulled
+	 */
+	static int pickCard(long hand, int downcard, int downsuit,
+	                    boolean defend) {
+		return pickPlayable(hand, Hand.playable(hand, downcard, downsuit),
+		                    downsuit, defend);
+	}
+
+	/**
+	 * The decision of pickCard() once the playable cards are known, eg.
+	 * from LegalMoves.
+	 *
+	 * @param hand mask of the cards in hand
+	 * @param playable mask of the cards of the hand that can be played
+	 * @param downsuit id of the suit must be played
+	 * @param defend true if cpu should defend, see shouldDefend()
+	 * @return index of the card to play, or -1 if a card must be pulled
+	 */
+	static int pickPlayable(long hand, long playable, int downsuit,
+	                        boolean defend) {
+		long aceCards = hand & Hand.rankMask(1);
+		long playableCards = playable & ~aceCards;
+
+		if (playableCards != 0) {
+			/* Try to prevent opponent from winning the game
+			   by playing a Seven or an Ace. */
+			if (defend) {
+				long seven = playableCards & Hand.rankMask(7)
+				             & Hand.suitMask(downsuit);
+				if (seven != 0)
+					return Long.numberOfTrailingZeros(seven);
+				if (aceCards != 0)
+					return Long.numberOfTrailingZeros(aceCards);
+			}
+			/* Play the card with the higher points value of the
+			   dominant suit, that is the last one of the suit. */
+			int mSuit = Hand.dominantSuit(playableCards);
+			return 63 - Long.numberOfLeadingZeros(playableCards
+			                             & Hand.suitMask(mSuit));
+		}
+		if (aceCards == 0)
+			return -1;
+		return Long.numberOfTrailingZeros(aceCards);
+	}
+
+	/**
+	 * The decision of chooseCard() for a CPU with weights.
+	 *
+	 * Every card that can be played is scored by the weighted sum of its
+	 * features (see W_ACE to W_DEFEND_ACE) and the best one is played.
+	 * On a tie the card of the first suit wins, then the higher card.
+	 *
+	 * @param hand mask of the cards in hand
+	 * @param downcard index of the down card
+	 * @param downsuit id of the suit must be played
+	 * @param defend true if cpu should defend, see shouldDefend()
+	 * @param w the weights
+	 * @return index of the card to play, or -1 if a card must be pulled
+	 */
+	static int pickCard(long hand, int downcard, int downsuit,
+	                    boolean defend, double[] w) {
+		long aceCards = hand & Hand.rankMask(1);
+		long playableCards = Hand.playable(hand, downcard, downsuit)
+		                     & ~aceCards;
+		long candidates = playableCards | aceCards;
+
+		int best = -1;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (int suit = 1; suit <= Deck.NUM_SUITS; suit++) {
+			long suitCards = candidates & Hand.suitMask(suit);
+			int dominance = Long.bitCount(playableCards
+			                              & Hand.suitMask(suit));
+			int kept = Long.bitCount(hand & Hand.suitMask(suit)) - 1;
+
+			while (suitCards != 0) { // higher cards first
+				int card = highest(suitCards);
+				suitCards &= ~(1L << card);
+				int num = Hand.numOf(card);
+				double score = w[W_VALUE] * Hand.value(1L << card)
+				               + w[W_KEEP] * kept;
+				if (num == 1) {
+					score += w[W_ACE];
+					if (defend)
+						score += w[W_DEFEND_ACE];
+				} else {
+					score += w[W_DOMINANCE] * dominance;
+				}
+				if (num == 7) {
+					score += w[W_SEVEN];
+					if (defend && suit == downsuit)
+						score += w[W_DEFEND_SEVEN];
+				}
+				if (num == 8)
+					score += w[W_EIGHT];
+
+				if (score > bestScore) {
+					bestScore = score;
+					best = card;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * The decision of chooseCard() for a CPU that keeps track of the
+	 * cards: a card the next player cannot answer, if there are any (see
+	 * CardTracker.unanswered()), the one of the dominant suit with the
+	 * higher points value, also when defending. Otherwise the rules as
+	 * written.
+	 *
+	 * @param hand mask of the cards in hand
+	 * @param downcard index of the down card
+	 * @param downsuit id of the suit must be played
+	 * @param defend true if cpu should defend, see shouldDefend()
+	 * @param possible mask of the cards the next player may hold
+	 * @return index of the card to play, or -1 if a card must be pulled
+	 */
+	static int pickCard(long hand, int downcard, int downsuit,
+	                    boolean defend, long possible) {
+		long playable = Hand.playable(hand, downcard, downsuit);
+		long blocking = playable & ~Hand.rankMask(1)
+		                & CardTracker.unanswered(possible);
+		if (blocking != 0)
+			return pickPlayable(hand, blocking, downsuit, false);
+		return pickPlayable(hand, playable, downsuit, defend);
+	}
+
+	/**
+	 * The decision of chooseSuit() for a CPU with weights: the suit with
+	 * the best weighted sum of its features (see W_SUIT_COUNT to
+	 * W_SUIT_PREV), the first one on a tie.
+	 *
+	 * @param hand mask of the cards in hand
+	 * @param prevSuit id of the suit of the last but one card played,
+	 *                 0 if there is none
+	 * @param defend true if cpu should defend, see shouldDefend()
+	 * @param w the weights
+	 * @return id of the suit to set
+	 */
+	static int pickSuit(long hand, int prevSuit, boolean defend,
+	                    double[] w) {
+		int best = 1;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (int suit = 1; suit <= Deck.NUM_SUITS; suit++) {
+			long suitCards = hand & Hand.suitMask(suit);
+			double score = w[W_SUIT_COUNT] * Long.bitCount(suitCards)
+			               + w[W_SUIT_VALUE] * Hand.value(suitCards);
+			if (defend && suit == prevSuit)
+				score += w[W_SUIT_PREV];
+			if (score > bestScore) {
+				bestScore = score;
+				best = suit;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * The decision of chooseSuit(), made on card masks.
+	 *
+	 * @param hand mask of the cards in hand
+	 * @param prevSuit id of the suit of the last but one card played,
+	 *                 0 if there is none
+	 * @param defend true if cpu should defend, see shouldDefend()
+	 * @return id of the suit to set
+	 */
+	static int pickSuit(long hand, int prevSuit, boolean defend) {
+		if (defend)
+			hand &= ~Hand.suitMask(prevSuit);
+		return Hand.dominantSuit(hand);
+	}
+
+	/**
+	 * The decision of chooseSuit() for a CPU that keeps track of the
+	 * cards. When the next player may hold no Ace, the suits he may hold
+	 * none of leave him nothing to play: the dominant one of them in
+	 * hand is set, or the first of them when defending. Otherwise the
+	 * rules as written.
+	 *
+	 * @param hand mask of the cards in hand
+	 * @param prevSuit id of the suit of the last but one card played,
+	 *                 0 if there is none
+	 * @param defend true if cpu should defend, see shouldDefend()
+	 * @param possible mask of the cards the next player may hold
+	 * @return id of the suit to set
+	 */
+	static int pickSuit(long hand, int prevSuit, boolean defend,
+	                    long possible) {
+		if ((possible & Hand.rankMask(1)) == 0) {
+			long free = 0; // the suits he may hold none of
+			for (int suit = 1; suit <= Deck.NUM_SUITS; suit++)
+				if ((possible & Hand.suitMask(suit)) == 0)
+					free |= Hand.suitMask(suit);
+			if ((hand & free) != 0)
+				return Hand.dominantSuit(hand & free);
+			if (defend && free != 0)
+				return Hand.suitOf(Long.numberOfTrailingZeros(free));
+		}
+		return pickSuit(hand, prevSuit, defend);
+	}
+
+	/**
+	 * The decision of chooseSeven(), made on card masks.
+	 *
+	 * @param hand mask of the cards in hand
+	 * @return index of the 7 card to play, or -1 if there is none
+	 */
+	static int pickSeven(long hand) {
+		long sevenCards = hand & Hand.rankMask(7);
+		if (sevenCards == 0)
+			return -1;
+
+		int mSuit = Hand.dominantSuit(sevenCards);
+		return Long.numberOfTrailingZeros(sevenCards
+		                                  & Hand.suitMask(mSuit));
+	}
+
+	/**
+	 * Return the highest card of a set.
+	 *
+	 * @param cards mask of cards, not empty
+	 * @return index of the card
+	 */
+	private static int highest(long cards) {
+		return 63 - Long.numberOfLeadingZeros(cards);
+	}
 }
@@ -17,32 +17,40 @@
 
 package agonia;
 
+import java.io.InputStream;
 import java.util.Scanner;
 
 
 public class PlayerHuman extends Player {
-	Card[] lastCards; // last two cards played
+	private Scanner in; // where the user's answers come from
 
 	public PlayerHuman() {
-		super();
-		lastCards = new Card[] {null, null};
+		this(System.in, new AnsiRenderer(System.out));
 	}
 
 	/**
-	 * Append card to lastCards and remove the first card.
+	 * Create a human player that talks to the user through the given
+	 * input and renderer, eg. those of a network connection.
 	 *
-	 * @param card card to add
-	 * @return nothing
+	 * @param in input source, one answer per line
+	 * @param out renderer, flushed whenever an answer is expected
 	 */
-	public void addToLastCards(Card card) {
-		lastCards[0] = lastCards[1];
-		lastCards[1] = card;
+	public PlayerHuman(InputStream in, Renderer out) {
+		super();
+		this.name = "You";
+		this.in = new Scanner(in);
+		this.out = out;
 	}
 
-
-	// just a wrapper to the real function
-	public void play(Deck deck, Player playerCPU) {
-		play(deck, (PlayerCPU) playerCPU);
+	/**
+	 * Flush everything displayed so far and wait for the user's answer.
+	 *
+	 * @return next line of input
+	 * @throws java.util.NoSuchElementException if the input is closed
+	 */
+	String readLine() {
+		out.flush();
+		return in.nextLine();
 	}
 
 	/**
@@ -50,82 +58,72 @@ public class PlayerHuman extends Player {
 	 * on it.
 	 *
 	 * @param deck deck of cards
-	 * @param playerCPU CPU player
-	 * @return nothing
+	 * @param opponent the next player
+	 * @return the player to play the next turn
 	 */
-	public void play(Deck deck, PlayerCPU playerCPU) {
-		while (true) {
-			Agonia.displayTable(this, playerCPU, deck.downcard());
-			Card card = chooseCard(deck, playerCPU);
-			if (card == null)
-				break;
+	public Player play(Deck deck, Player opponent) {
+		Agonia.displayTable(out, this, deck.downcard());
+		Card card = chooseCard(deck, opponent);
+		Player next = opponent;
 
-			cards.remove(card);
-			addToLastCards(card);
-			deck.setDowncard(card);
+		if (card == null) {
+			deck.folded(this);
+			out.println();
+			return next;
+		}
 
-			switch (card.num()) {
-			case 1:
-				deck.setDownsuit(chooseSuit());
-				System.out.printf("You chose %s.%n",
-				                  deck.downsuit());
-				break;
-			case 7:
-				int n = doSevenLoop(deck, this, playerCPU, 0);
-				if ((n == 4 || n == 8) && ! playerCPU.hasWon()) {
-					// cpu played last
-					playerCPU.printEndTurn();
-					continue;
-				}
-				break;
-			case 8:
-				System.out.println("You played an 8. " +
-				                   "Play again.\n");
-				continue;
-			}
+		cards.remove(card);
+		addToLastCards(card);
+		deck.setDowncard(card);
+
+		switch (card.num()) {
+		case 1:
+			deck.setDownsuit(chooseSuit());
+			out.printf("You chose %s.%n", deck.downsuit());
+			break;
+		case 7:
+			next = doSevenLoop(deck, opponent, this);
+			break;
+		case 8:
+			next = opponent.next;
+			printEight(opponent);
 			break;
 		}
-		System.out.println();
-	}
-
-	// just a wrapper to the real function
-	public boolean playFirstCard(Deck deck, Player playerCPU) {
-		return playFirstCard(deck, (PlayerCPU) playerCPU);
+		out.println();
+		return next;
 	}
 
 	/**
 	 * Make the appropriate manipulations if first card is special.
 	 *
 	 * @param deck deck of cards
-	 * @param playerCPU CPU player
-	 * @return true if player looses his turn, else false
+	 * @param opponent the next player
+	 * @return the player to play the first turn
 	 */
-	public boolean playFirstCard(Deck deck, PlayerCPU playerCPU) {
+	public Player playFirstCard(Deck deck, Player opponent) {
 		switch(deck.downcard().num()) {
 		case 1:
-			System.out.printf("First card is %s.%n",
-			                  deck.downcard().shortdesc());
-			System.out.printf("Your cards: ");
-			Agonia.displayCards(cards);
-			System.out.println();
+			out.printf("First card is %s.%n",
+			           deck.downcard().shortdesc());
+			out.printf("Your cards: ");
+			Agonia.displayCards(out, cards);
+			out.println();
 			deck.setDownsuit(chooseSuit());
-			System.out.printf("You chose %s.%n%n", deck.downsuit());
+			out.printf("You chose %s.%n%n", deck.downsuit());
 			break;
 		case 7:
-			System.out.printf("First card is %s.%n",
-			                  deck.downcard().shortdesc());
-			int n = doSevenLoop(deck, this, playerCPU, 1);
-			System.out.println();
-			if (n == 4 || n == 8) // human played last
-				return true;
-			break;
+			out.printf("First card is %s.%n",
+			           deck.downcard().shortdesc());
+			Player next = doSevenLoop(deck, this, opponent);
+			out.println();
+			return next;
 		case 8:
-			System.out.printf("First card is %s. " +
-			                  "You loose your turn.%n%n",
-			                  deck.downcard().shortdesc());
-			return true;
+			out.printf("First card is %s. " +
+			           "You loose your turn.%n%n",
+			           deck.downcard().shortdesc());
+			return opponent;
 		}
-		return false;
+		return this;
 	}
 
 	/**
@@ -137,48 +135,48 @@ public class PlayerHuman extends Player {
 	 * by entering "f" by assuming he already pulled a card earlier.
 	 *
 	 * @param deck deck of cards
-	 * @param playerCPU cpu player
+	 * @param opponent the other player
 	 * @return the card played or null if player folds
 	 */
-	public Card chooseCard(Deck deck, PlayerCPU playerCPU) {
+	public Card chooseCard(Deck deck, Player opponent) {
 		String input;
-		Scanner sc = new Scanner(System.in);
 		Card card;
 		boolean pull = true; // if true, user can pull a card
 
 		while (true) {
-			System.out.print("Choose a card: ");
-			input = sc.nextLine().toLowerCase().trim().
-			                replaceAll("\\s+", " ");
-			if (input.equals("p")) { // pull card
+			out.print("Choose a card: ");
+			input = readLine().trim();
+			if (input.equalsIgnoreCase("p")) { // pull card
 				if (pull) {
-					card = deck.dealOneCard(this, playerCPU);
-					cards.add(card);
-					System.out.print("You pulled: ");
-					System.out.println(card.shortdesc());
+					card = pull(deck);
 					pull = false;
+					if (card == null) {
+						out.println(
+						  "No cards left to pull.");
+						continue;
+					}
+					out.print("You pulled: ");
+					out.println(card.shortdesc());
 				} else {
-					System.out.println(
+					out.println(
 					         "You already pulled a card.");
 				}
-			} else if (input.equals("f")) { // fold
+			} else if (input.equalsIgnoreCase("f")) { // fold
 				if (!pull) {
 					return null;
 				} else {
-					System.out.println("You can't fold. " +
+					out.println("You can't fold. " +
 					      "You should pull a card first.");
 				}
 
 			} else { // play a card
 				card = Agonia.findCard(input, cards);
 				if (card == null) {
-					System.out.println("You have not " +
-					                   "such a card.");
-				} else if (card.num() != 1
-				&& card.num() != deck.downcard().num()
-				&& card.suit() != deck.downsuit()) {
-					System.out.println("You can't play " +
-					                   "this card.");
+					out.println("You have not " +
+					            "such a card.");
+				} else if (! deck.isPlayable(card)) {
+					out.println("You can't play " +
+					            "this card.");
 				} else {
 					return card;
 				}
@@ -192,39 +190,37 @@ public class PlayerHuman extends Player {
 	 * @return suit to set
 	 */
 	public Card.Suit chooseSuit() {
-		Scanner sc = new Scanner(System.in);
 		String input;
 
-		System.out.print("Choose the suit you want to set (D, H, C, S): ");
+		out.print("Choose the suit you want to set (D, H, C, S): ");
 		while (true) {
-			input = sc.nextLine().toUpperCase().trim();
-			Card.Suit suit = Card.charToSuit(input.charAt(0));
-			if (suit != Card.Suit.INVALID && input.length() == 1)
-				return suit;
-			System.out.print("Not such suit. Try again: ");
+			input = readLine().toUpperCase().trim();
+			if (input.length() == 1) {
+				Card.Suit suit = Card.charToSuit(input.charAt(0));
+				if (suit != Card.Suit.INVALID)
+					return suit;
+			}
+			out.print("Not such suit. Try again: ");
 		}
 	}
 
 	/**
 	 * Prompt user to select a 7 card to play, if any.
 	 *
+	 * @param deck deck of cards
 	 * @return null if player doesn't want or cannot play a 7 card,
 	 *         else the card played
 	 */
-	public Card chooseSeven() {
-		CardArray sevenCards = new CardArray();
-		for (Card i : cards)
-			if (i.num() == 7)
-				sevenCards.add(i);
-		if (sevenCards.isEmpty())
+	public Card chooseSeven(Deck deck) {
+		long sevenCards = cards.mask() & Hand.rankMask(7);
+		if (sevenCards == 0)
 			return null;
 
-		Scanner sc = new Scanner(System.in);
 		String input;
 		while (true) {
-			System.out.print("CPU played a 7. " +
-			                 "Will you play one too? (y/n) ");
-			input = sc.nextLine().toLowerCase().trim();
+			out.print("A 7 was played. " +
+			          "Will you play one too? (y/n) ");
+			input = readLine().toLowerCase().trim();
 			if (input.equals("y") || input.equals("yes"))
 				break;
 			else if (input.equals("n") || input.equals("no"))
@@ -233,18 +229,17 @@ public class PlayerHuman extends Player {
 
 		Card card;
 
-		System.out.print("Choose a card ");
-		Agonia.displayCards(sevenCards);
-		System.out.print(": ");
+		out.print("Choose a card ");
+		out.cards(sevenCards);
+		out.print(": ");
 		while (true) {
-			input = sc.nextLine().toLowerCase().trim()
-					.replaceAll("\\s+", " ");
+			input = readLine();
 			card = Agonia.findCard(input, cards);
 			if (card == null) {
-				System.out.print("You have not such a card.");
+				out.print("You have not such a card.");
 			} else if (card.num() != 7) {
-				System.out.println("You can't play this card. " +
-				                   "You should play a 7.");
+				out.println("You can't play this card. " +
+				            "You should play a 7.");
 			} else {
 				cards.remove(card);
 				addToLastCards(card);
@@ -260,7 +255,7 @@ public class PlayerHuman extends Player {
 	 */
 	public boolean hasWon() {
 		if (super.hasWon()) {
-			System.out.println("You won the round!");
+			out.println("You won the round!");
 			return true;
 		}
 		return false;
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package agonia;
+
+import java.util.SplittableRandom;
+
+
+/**
+ * CPU player that chooses its cards with information set Monte Carlo tree
+ * search (single observer ISMCTS).
+ *
+ * Each iteration deals the cards the player cannot see at random
+ * (determinization), walks down a tree of both players' decisions that
+ * is shared by all determinizations, and plays the round out with
+ * PlayerCPU's rules for both players. The suit after an Ace and the
+ * answers to 7 cards are left to PlayerCPU as well: they are part of the
+ * decision of GameState that plays the card, not nodes of the tree.
+ *
+ * The walk down the tree makes its decisions on the determinization and
+ * unmakes them once the result is backed up; the playout runs on a copy,
+ * as it goes too deep to be unmade.
+ *
+ * A playout is scored by the points it would charge: the winner of the
+ * round scores above one half by the points of the loser, the loser below
+ * one half by his own points, as a match is about points, not rounds.
+ *
+ * A search stops after a number of playouts or a time budget, whichever
+ * comes first.
+ *
+ * The search models a table of two players; on larger tables the player
+ * chooses its cards like PlayerCPU.
+ */
+public class PlayerMCTS extends PlayerCPU {
+	private int playouts; // playouts per decision
+	private long budget;  // nanoseconds per decision, 0 for no limit
+	private SplittableRandom rnd;
+	private GameState known;  // the round as this player sees it
+	private GameState sample; // the determinization of an iteration
+	private GameState scratch; // the playout of an iteration
+
+	//------------------Constant definitions----------------------
+	static final double EXPLORATION = 0.7;
+	// decisions after which a playout is scored as a draw
+	static final int MAX_PLAYOUT_MOVES = 1000;
+	// points that score a playout 0 for the loser and 1 for the winner
+	static final double MAX_POINTS = 200;
+
+	//--------------------Constructors----------------------------
+
+	/**
+	 * @param playouts playouts per decision
+	 * @param millis time budget per decision in milliseconds, 0 for none
+	 * @param seed seed of the determinizations and playouts
+	 */
+	public PlayerMCTS(int playouts, long millis, long seed) {
+		super();
+		this.playouts = playouts;
+		this.budget = millis * 1000000;
+		this.rnd = new SplittableRandom(seed);
+		this.known = new GameState(rnd);
+		this.sample = new GameState(rnd);
+		this.scratch = new GameState(rnd);
+	}
+
+	public PlayerMCTS(int playouts, long millis) {
+		this(playouts, millis, System.nanoTime());
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	/**
+	 * Decide which card to play by searching, pulling a card first if
+	 * the search says so.
+	 *
+	 * @param deck deck of cards
+	 * @param opponent the next player
+	 * @return the card that CPU decided to play,
+	 *	   or null if CPU folds
+	 */
+	public Card chooseCard(Deck deck, Player opponent) {
+		if (opponent.next != this)
+			return super.chooseCard(deck, opponent);
+
+		known.observe(deck, this, opponent);
+		int move = search(opponent.cards.size(), deck.size());
+		if (samples != null)
+			samples.add(SampleWriter.CARD, cards.mask(), deck, opponent,
+			            shouldDefend(opponent), move);
+
+		if (move == GameState.PULL) {
+			Card card = pull(deck);
+			if (card == null) // nothing to pull, fold
+				return null;
+			out.print(name);
+			out.println(" pulled a card.");
+
+			known.observe(deck, this, opponent);
+			known.pulled = true;
+			move = search(opponent.cards.size(), deck.size());
+			if (samples != null)
+				samples.add(SampleWriter.PULLED, cards.mask(), deck,
+				            opponent, shouldDefend(opponent), move);
+		}
+		if (move == GameState.FOLD)
+			return null;
+		return Card.of(move);
+	}
+
+	/**
+	 * Run the search from the known state.
+	 *
+	 * @param opponentCards number of cards of the opponent
+	 * @param pileCards number of cards left to deal
+	 * @return the most visited decision of the root
+	 */
+	private int search(int opponentCards, int pileCards) {
+		long legal = known.legal();
+		if (Long.bitCount(legal) == 1)
+			return Long.numberOfTrailingZeros(legal);
+
+		Node root = new Node(null, -1, -1);
+		long deadline = System.nanoTime() + budget;
+
+		for (int i = 0; i < playouts; i++) {
+			if (budget > 0 && (i & 63) == 0
+			&& System.nanoTime() - deadline > 0)
+				break;
+			sample.determinize(known, opponentCards, pileCards);
+			iterate(root);
+		}
+
+		Node best = null;
+		for (Node i = root.child; i != null; i = i.sibling)
+			if (best == null || i.visits > best.visits)
+				best = i;
+		if (best == null) // no time for a single playout
+			return known.policy();
+		return best.move;
+	}
+
+	/**
+	 * One iteration on the current determinization: select, expand,
+	 * play out and back up the result.
+	 *
+	 * @param root root of the tree
+	 * @return nothing
+	 */
+	private void iterate(Node root) {
+		Node node = root;
+
+		while (! sample.isOver() && sample.depth() < GameState.MAX_DEPTH) {
+			int turn = sample.turn();
+			long legal = sample.legal();
+			long untried = legal;
+			Node best = null;
+			double bestScore = Double.NEGATIVE_INFINITY;
+
+			// who decides after a node depends on the determinization
+			// (the 7 cards answered, a pull with no card left), so a
+			// node may have children of both seats: only those of the
+			// seat to decide count
+			for (Node i = node.child; i != null; i = i.sibling) {
+				long bit = 1L << i.move;
+				if (i.player != turn || (legal & bit) == 0)
+					continue;
+				untried &= ~bit;
+				i.avail++;
+				double score = i.reward / i.visits
+				               + EXPLORATION * Math.sqrt(
+				                 Math.log(i.avail) / i.visits);
+				if (score > bestScore) {
+					bestScore = score;
+					best = i;
+				}
+			}
+
+			if (untried != 0) {
+				int move = pick(untried);
+				node = new Node(node, move, turn);
+				sample.make(move);
+				break;
+			}
+			node = best;
+			sample.make(node.move);
+		}
+
+		scratch.copy(sample);
+		int winner = scratch.playout(MAX_PLAYOUT_MOVES);
+		double score = 0; // how much the winner won by, 0 to 0.5
+		if (winner >= 0) {
+			int points = Hand.value(scratch.hands[1 - winner]);
+			score = 0.5 * Math.min(points / MAX_POINTS, 1);
+		}
+		for (; node != root; node = node.parent) {
+			node.visits++;
+			if (winner < 0)
+				node.reward += 0.5;
+			else if (winner == node.player)
+				node.reward += 0.5 + score;
+			else
+				node.reward += 0.5 - score;
+		}
+		while (sample.depth() > 0)
+			sample.unmake();
+	}
+
+	/**
+	 * Pick one of a set of decisions at random.
+	 *
+	 * @param moves mask of decisions, not empty
+	 * @return the decision
+	 */
+	private int pick(long moves) {
+		for (int n = rnd.nextInt(Long.bitCount(moves)); n > 0; n--)
+			moves &= moves - 1;
+		return Long.numberOfTrailingZeros(moves);
+	}
+
+	/**
+	 * A decision in the search tree, with the statistics of the
+	 * iterations that went through it.
+	 */
+	private static class Node {
+		Node parent;
+		Node child;   // first child
+		Node sibling; // next child of the parent
+		int move;     // decision leading here
+		int player;   // seat that took the decision
+		int visits;
+		int avail;    // iterations where the decision was legal
+		double reward;
+
+		Node(Node parent, int move, int player) {
+			this.parent = parent;
+			this.move = move;
+			this.player = player;
+			this.avail = 1;
+			if (parent != null) {
+				sibling = parent.child;
+				parent.child = this;
+			}
+		}
+	}
+}
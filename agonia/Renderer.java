@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+
+/**
+ * Where a game displays what happens, so the same game can be drawn on a
+ * terminal, sent to a remote client or not displayed at all.
+ *
+ * A renderer may keep what it is given until flush(), which the game calls
+ * at the end of every turn and before waiting for the user's input, so
+ * output is written once per turn instead of once per message.
+ */
+public interface Renderer {
+	void print(String text);
+	void println(String text);
+	void println();
+	void printf(String format, Object... args);
+
+	/**
+	 * Display a set of cards, sorted by suit and num.
+	 *
+	 * @param cards mask of the cards, as kept by Hand
+	 * @return nothing
+	 */
+	void cards(long cards);
+
+	/**
+	 * Show that the deck is being shuffled.
+	 *
+	 * @return nothing
+	 */
+	void shuffle();
+
+	/**
+	 * Show that the discard pile went back to the deck and was shuffled,
+	 * in the middle of a round. Does what shuffle() does unless the
+	 * renderer keeps it shorter.
+	 *
+	 * @return nothing
+	 */
+	default void reshuffle() { shuffle(); }
+
+	/**
+	 * Clear the screen, if there is one.
+	 *
+	 * @return nothing
+	 */
+	void clear();
+
+	/**
+	 * Write out everything displayed so far.
+	 *
+	 * @return nothing
+	 */
+	void flush();
+
+	/**
+	 * Tell whether what is rendered is seen by anyone. Messages built
+	 * with printf() are skipped when not, so that headless games do not
+	 * allocate their arguments.
+	 *
+	 * @return true, unless the renderer displays nothing
+	 */
+	default boolean isVisible() { return true; }
+
+	/**
+	 * Renderer that displays nothing, for games nobody watches.
+	 */
+	Renderer NONE = new Renderer() {
+		public void print(String text) {}
+		public void println(String text) {}
+		public void println() {}
+		public void printf(String format, Object... args) {}
+		public void cards(long cards) {}
+		public void shuffle() {}
+		public void clear() {}
+		public void flush() {}
+		public boolean isVisible() { return false; }
+	};
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package agonia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Streams back the samples of a file written by SampleWriter.
+ *
+ * The file is read a chunk at a time into a buffer of one chunk, and
+ * next() moves from sample to sample within it, so memory stays the same
+ * whatever the size of the file.
+ */
+public class SampleReader implements Closeable {
+	private ReadableByteChannel channel;
+	private ByteBuffer chunk;
+	private int left;   // samples of the chunk after the current one
+	private int sample; // offset of the current sample in the chunk
+
+	//--------------------Constructor-----------------------------
+
+	public SampleReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		chunk = ByteBuffer.allocate(SampleWriter.CHUNK_SAMPLES
+		                            * SampleWriter.SAMPLE_SIZE);
+		left = 0;
+		sample = -SampleWriter.SAMPLE_SIZE;
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public long hand() { return chunk.getLong(sample); }
+	public int kind() { return chunk.get(sample + 8); }
+	public int downcard() { return chunk.get(sample + 9); }
+	public int downsuit() { return chunk.get(sample + 10); }
+	public int opponentCards() { return chunk.get(sample + 11); }
+	public int pileSize() { return chunk.get(sample + 12); }
+	public int action() { return chunk.get(sample + 13); }
+
+	public boolean defend() {
+		return (chunk.get(sample + 14) & SampleWriter.DEFEND) != 0;
+	}
+
+	/**
+	 * Move to the next sample.
+	 *
+	 * @return true if there is one, false at the end of the file
+	 * @throws IOException if the file is truncated or not a sample file
+	 */
+	public boolean next() throws IOException {
+		if (left > 0) {
+			left--;
+			sample += SampleWriter.SAMPLE_SIZE;
+			return true;
+		}
+
+		chunk.clear().limit(SampleWriter.HEADER);
+		if (! fill())
+			return false;
+		int magic = chunk.getInt(0);
+		int n = chunk.getInt(4);
+		if (magic != SampleWriter.MAGIC || n <= 0
+		|| n > SampleWriter.CHUNK_SAMPLES)
+			throw new IOException("Not a sample file");
+
+		chunk.clear().limit(n * SampleWriter.SAMPLE_SIZE);
+		if (! fill())
+			throw new IOException("Truncated sample file");
+		left = n - 1;
+		sample = 0;
+		return true;
+	}
+
+	/**
+	 * Read until the buffer is full.
+	 *
+	 * @return true if it is, false if the file ended before any byte
+	 * @throws IOException if the file ends in the middle
+	 */
+	private boolean fill() throws IOException {
+		while (chunk.hasRemaining()) {
+			if (channel.read(chunk) < 0) {
+				if (chunk.position() == 0)
+					return false;
+				throw new IOException("Truncated sample file");
+			}
+		}
+		return true;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Scan sample files and print how many samples of each kind they
+	 * hold.
+	 */
+	public static void main(String[] args) throws IOException {
+		String[] kinds = {"card", "pulled", "suit", "seven"};
+		long[] counts = new long[kinds.length];
+		long start = System.nanoTime();
+
+		for (String i : args) {
+			try (SampleReader reader = new SampleReader(Path.of(i))) {
+				while (reader.next())
+					counts[reader.kind()]++;
+			}
+		}
+
+		double secs = (System.nanoTime() - start) / 1e9;
+		long total = 0;
+		for (int i = 0; i < kinds.length; i++) {
+			System.out.printf("%-8s%d%n", kinds[i], counts[i]);
+			total += counts[i];
+		}
+		System.out.printf("%d samples, %.0f samples per second%n",
+		                  total, total / secs);
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package agonia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+/**
+ * Writes the decisions of CPU players as training samples for a learned
+ * strategy.
+ *
+ * A sample is what the player saw when it decided and what it decided,
+ * in SAMPLE_SIZE bytes:
+ *
+ *   0-7  the cards in hand, a mask of card indexes
+ *   8    kind of decision: CARD, PULLED, SUIT or SEVEN
+ *   9    index of the down card
+ *   10   id of the suit must be played
+ *   11   number of cards of the next player
+ *   12   number of cards left to deal
+ *   13   the decision: a card index, PULL or FOLD (see GameState), or a
+ *        suit id for SUIT
+ *   14   flags: DEFEND if the next player may win with an Ace
+ *   15   unused, 0
+ *
+ * CARD is the choice of a card to play or to pull, PULLED the choice
+ * between the pulled card and folding, SUIT the suit after an Ace and
+ * SEVEN whether to answer a 7 (a 7 card) or pull (PULL).
+ *
+ * Samples are written in chunks: a header of MAGIC and the number of
+ * samples in the chunk (4 bytes each), then the samples. Only the chunk
+ * being filled is kept in memory, so a writer can produce any number of
+ * samples. SampleReader reads them back.
+ */
+public class SampleWriter implements Closeable {
+	private OutputStream out;
+	private ByteBuffer chunk; // header and samples of the chunk being filled
+	private long samples;     // samples written so far
+
+	//------------------Constant definitions----------------------
+	static final int MAGIC = 0x41475331; // "AGS1"
+	static final int HEADER = 8;
+	static final int SAMPLE_SIZE = 16;
+	static final int CHUNK_SAMPLES = 4096;
+
+	// kinds of decision
+	static final int CARD = 0;
+	static final int PULLED = 1;
+	static final int SUIT = 2;
+	static final int SEVEN = 3;
+
+	// flags
+	static final int DEFEND = 1;
+
+	//--------------------Constructors----------------------------
+
+	public SampleWriter(OutputStream out) {
+		this.out = out;
+		chunk = ByteBuffer.allocate(HEADER + CHUNK_SAMPLES * SAMPLE_SIZE);
+		chunk.position(HEADER);
+	}
+
+	public SampleWriter(Path file) throws IOException {
+		this(Files.newOutputStream(file));
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public long samples() { return samples; }
+
+	/**
+	 * Add a sample, writing the chunk out when it is full.
+	 *
+	 * @param kind kind of decision
+	 * @param hand mask of the cards in hand
+	 * @param deck deck of the round
+	 * @param opponent the next player
+	 * @param defend true if the player should defend, see
+	 *               PlayerCPU.shouldDefend()
+	 * @param action the decision
+	 * @return nothing
+	 * @throws UncheckedIOException if writing fails
+	 */
+	public void add(int kind, long hand, Deck deck, Player opponent,
+	                boolean defend, int action) {
+		chunk.putLong(hand);
+		chunk.put((byte) kind);
+		chunk.put((byte) deck.downcard().index());
+		chunk.put((byte) deck.downsuit().id());
+		chunk.put((byte) opponent.cards.size());
+		chunk.put((byte) deck.size());
+		chunk.put((byte) action);
+		chunk.put((byte) (defend ? DEFEND : 0));
+		chunk.put((byte) 0);
+		samples++;
+
+		if (! chunk.hasRemaining()) {
+			try {
+				writeChunk();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Write the last chunk, if not empty, and close the output.
+	 *
+	 * @return nothing
+	 * @throws IOException if writing fails
+	 */
+	public void close() throws IOException {
+		try {
+			if (chunk.position() > HEADER)
+				writeChunk();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeChunk() throws IOException {
+		int length = chunk.position();
+		chunk.putInt(0, MAGIC);
+		chunk.putInt(4, (length - HEADER) / SAMPLE_SIZE);
+		out.write(chunk.array(), 0, length);
+		chunk.position(HEADER);
+	}
+}
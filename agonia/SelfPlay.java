@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package agonia;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+/**
+ * Plays a strategy against itself and writes every decision of its
+ * players as a training sample, see SampleWriter.
+ */
+public class SelfPlay {
+
+	/**
+	 * Arguments: the directory to write the samples in, then optionally
+	 * the number of matches, the master seed, the number of threads,
+	 * the number of seats at each table and the strategy (see
+	 * Tournament.strategy()), "cpu" by default.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: java agonia.SelfPlay DIR " +
+			                   "[MATCHES SEED THREADS SEATS STRATEGY]");
+			System.exit(1);
+		}
+		Path dir = Path.of(args[0]);
+		int matches = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		long seed = args.length > 2 ? Long.parseLong(args[2])
+		                            : System.nanoTime();
+		int threads = args.length > 3
+		              ? Integer.parseInt(args[3])
+		              : Runtime.getRuntime().availableProcessors();
+		int seats = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+		String strategy = args.length > 5 ? args[5] : "cpu";
+
+		Files.createDirectories(dir);
+		Tournament tournament = new Tournament(
+		        Tournament.strategy(strategy), Tournament.strategy(strategy),
+		        100, seed, seats);
+		tournament.setSampleDir(dir);
+		long start = System.nanoTime();
+		tournament.run(matches, threads);
+		double secs = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("Strategy: %s, seats: %d, seed: %d%n",
+		                  strategy, seats, seed);
+		System.out.printf("%d samples in %d matches, " +
+		                  "%.0f samples per second%n",
+		                  tournament.samples(), matches,
+		                  tournament.samples() / secs);
+	}
+}
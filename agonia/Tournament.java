@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package agonia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+
+/**
+ * Plays many headless matches between two player strategies, in parallel.
+ *
+ * Matches are split among the threads of a ForkJoinPool and each match
+ * gets its own seed, derived from the master seed, so a tournament gives
+ * the same results whatever its parallelism. The two strategies take
+ * turns playing first: strategy A plays first on even matches, B on odd
+ * ones, the way Agonia.whoIsFirst() orders the players. On tables of more
+ * than two seats the strategies alternate around the table.
+ *
+ * Games can be recorded too, each thread writing the matches it plays to
+ * a file of its own, see GameRecorder, and so can the decisions of the
+ * CPU players, as training samples, see SampleWriter.
+ */
+public class Tournament {
+	private Supplier<? extends Player> strategyA; // new player for A
+	private Supplier<? extends Player> strategyB; // new player for B
+	private int pointsLimit;
+	private long masterSeed;
+	private int seats;      // players at each table
+	private Path recordDir; // where the games are recorded, null for none
+	// recorder of each thread, writing to its own file
+	private ConcurrentHashMap<Thread, GameRecorder> recorders;
+	private AtomicInteger recordFiles; // record files opened so far
+	private Path sampleDir; // where the decisions are written, null for none
+	// sample writer of each thread, writing to its own file
+	private ConcurrentHashMap<Thread, SampleWriter> sampleWriters;
+	private AtomicInteger sampleFiles; // sample files opened so far
+	private AtomicLong samples; // samples of the closed writers
+
+	// matches played by a task without splitting it further
+	static final int MATCHES_PER_TASK = 64;
+
+	//--------------------Constructor-----------------------------
+
+	/**
+	 * @param strategyA creates a fresh player of the first strategy
+	 * @param strategyB creates a fresh player of the second strategy
+	 * @param pointsLimit points limit of each match
+	 * @param masterSeed seed the seeds of all matches derive from
+	 */
+	public Tournament(Supplier<? extends Player> strategyA,
+	                  Supplier<? extends Player> strategyB,
+	                  int pointsLimit, long masterSeed) {
+		this(strategyA, strategyB, pointsLimit, masterSeed, 2);
+	}
+
+	/**
+	 * @param strategyA creates a fresh player of the first strategy
+	 * @param strategyB creates a fresh player of the second strategy
+	 * @param pointsLimit points limit of each match
+	 * @param masterSeed seed the seeds of all matches derive from
+	 * @param seats players at each table, 2 to GameEngine.MAX_PLAYERS
+	 */
+	public Tournament(Supplier<? extends Player> strategyA,
+	                  Supplier<? extends Player> strategyB,
+	                  int pointsLimit, long masterSeed, int seats) {
+		this.strategyA = strategyA;
+		this.strategyB = strategyB;
+		this.pointsLimit = pointsLimit;
+		this.masterSeed = masterSeed;
+		this.seats = seats;
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	/**
+	 * Play a number of matches on a new pool of threads.
+	 *
+	 * @param matches number of matches
+	 * @param parallelism number of threads to play on
+	 * @return aggregated results of all matches
+	 */
+	public Result run(int matches, int parallelism) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		recorders = new ConcurrentHashMap<>();
+		recordFiles = new AtomicInteger();
+		sampleWriters = new ConcurrentHashMap<>();
+		sampleFiles = new AtomicInteger();
+		samples = new AtomicLong();
+		try {
+			return pool.invoke(new Matches(0, matches));
+		} finally {
+			pool.shutdown();
+			closeRecorders();
+		}
+	}
+
+	/**
+	 * Return the number of samples written by the last run.
+	 *
+	 * @return number of samples
+	 */
+	public long samples() {
+		return samples == null ? 0 : samples.get();
+	}
+
+	/**
+	 * Record the matches of the next runs in a directory, as files named
+	 * games-N.agr, one per thread.
+	 *
+	 * @param dir existing directory, null to stop recording
+	 * @return nothing
+	 */
+	public void setRecordDir(Path dir) {
+		recordDir = dir;
+	}
+
+	/**
+	 * Return the recorder of the current thread, opening its file the
+	 * first time.
+	 *
+	 * @return the recorder, or null if games are not recorded
+	 */
+	private GameRecorder recorder() {
+		if (recordDir == null)
+			return null;
+		return recorders.computeIfAbsent(Thread.currentThread(), t -> {
+			Path file = recordDir.resolve(
+			        "games-" + recordFiles.getAndIncrement() + ".agr");
+			try {
+				return new GameRecorder(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Write the decisions of the CPU players of the next runs in a
+	 * directory, as files named samples-N.ags, one per thread.
+	 *
+	 * @param dir existing directory, null to stop writing samples
+	 * @return nothing
+	 */
+	public void setSampleDir(Path dir) {
+		sampleDir = dir;
+	}
+
+	/**
+	 * Return the sample writer of the current thread, opening its file
+	 * the first time.
+	 *
+	 * @return the writer, or null if no samples are written
+	 */
+	private SampleWriter sampleWriter() {
+		if (sampleDir == null)
+			return null;
+		return sampleWriters.computeIfAbsent(Thread.currentThread(), t -> {
+			Path file = sampleDir.resolve(
+			        "samples-" + sampleFiles.getAndIncrement() + ".ags");
+			try {
+				return new SampleWriter(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	private void closeRecorders() {
+		try {
+			for (GameRecorder i : recorders.values())
+				i.close();
+			for (SampleWriter i : sampleWriters.values()) {
+				i.close();
+				samples.addAndGet(i.samples());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Play one match and add its outcome to the results.
+	 *
+	 * @param match number of the match, picks its seed and first player
+	 * @param result results to add the outcome to
+	 * @return nothing
+	 */
+	void playMatch(int match, Result result) {
+		Player[] players = new Player[seats];
+		boolean[] isA = new boolean[seats];
+		SampleWriter samples = sampleWriter();
+		for (int i = 0; i < seats; i++) {
+			isA[i] = (i + match) % 2 == 0;
+			players[i] = isA[i] ? strategyA.get() : strategyB.get();
+			if (samples != null && players[i] instanceof PlayerCPU)
+				((PlayerCPU) players[i]).setSampleWriter(samples);
+		}
+		long seed = GameEngine.seedOf(masterSeed, match);
+		GameEngine engine = new GameEngine(players, pointsLimit, seed);
+		engine.setRecorder(recorder());
+		Player winner = engine.playMatch();
+
+		result.matches++;
+		result.rounds += engine.round();
+		for (int i = 0; i < seats; i++) {
+			if (isA[i]) {
+				result.pointsA += players[i].points;
+				result.seatsA++;
+			} else {
+				result.pointsB += players[i].points;
+				result.seatsB++;
+			}
+		}
+		if (isA[winner.seat])
+			result.winsA++;
+		if (winner == players[0])
+			result.firstWins++;
+	}
+
+	/**
+	 * Task playing a range of matches, split in halves until small enough.
+	 */
+	private class Matches extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 1L;
+		private int from, to; // matches from (inclusive) to (exclusive)
+
+		Matches(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		protected Result compute() {
+			if (to - from <= MATCHES_PER_TASK) {
+				Result result = new Result();
+				for (int i = from; i < to; i++)
+					playMatch(i, result);
+				return result;
+			}
+
+			int mid = (from + to) >>> 1;
+			Matches left = new Matches(from, mid);
+			left.fork();
+			Result result = new Matches(mid, to).compute();
+			result.add(left.join());
+			return result;
+		}
+	}
+
+	/**
+	 * Totals of a set of matches.
+	 */
+	public static class Result {
+		long matches;
+		long winsA;     // matches won by strategy A
+		long firstWins; // matches won by the player that played first
+		long pointsA;   // points of strategy A at the end of each match
+		long pointsB;
+		long seatsA;    // players of strategy A in all matches
+		long seatsB;
+		long rounds;
+
+		public long matches() { return matches; }
+		public long winsA() { return winsA; }
+		public long winsB() { return matches - winsA; }
+		public long firstWins() { return firstWins; }
+
+		public double averagePointsA() {
+			return seatsA == 0 ? 0 : (double) pointsA / seatsA;
+		}
+
+		public double averagePointsB() {
+			return seatsB == 0 ? 0 : (double) pointsB / seatsB;
+		}
+
+		public double averageRounds() {
+			return matches == 0 ? 0 : (double) rounds / matches;
+		}
+
+		/**
+		 * Merge the totals of another set of matches into these.
+		 *
+		 * @param other totals to add
+		 * @return nothing
+		 */
+		public void add(Result other) {
+			matches += other.matches;
+			winsA += other.winsA;
+			firstWins += other.firstWins;
+			pointsA += other.pointsA;
+			pointsB += other.pointsB;
+			seatsA += other.seatsA;
+			seatsB += other.seatsB;
+			rounds += other.rounds;
+		}
+
+		public String toString() {
+			return String.format(
+			        "Matches:           %d%n" +
+			        "A wins:            %d (%.2f%%)%n" +
+			        "B wins:            %d (%.2f%%)%n" +
+			        "First player wins: %d (%.2f%%)%n" +
+			        "Average points:    A %.2f, B %.2f%n" +
+			        "Average rounds:    %.2f%n",
+			        matches, winsA, percent(winsA),
+			        winsB(), percent(winsB()),
+			        firstWins, percent(firstWins),
+			        averagePointsA(), averagePointsB(),
+			        averageRounds());
+		}
+
+		private double percent(long n) {
+			return matches == 0 ? 0 : 100.0 * n / matches;
+		}
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Return the strategy with the given name: "cpu" for PlayerCPU,
+	 * "track" for PlayerCPU keeping track of the cards (see
+	 * PlayerCPU.setTracking()), "cpu:W1,W2,..." for PlayerCPU with
+	 * weights (see PlayerCPU.DEFAULT_WEIGHTS) or "mcts:N" for PlayerMCTS
+	 * with N playouts per decision.
+	 *
+	 * @param name name of the strategy
+	 * @return a supplier of players of the strategy
+	 * @throws IllegalArgumentException if there is no such strategy
+	 */
+	static Supplier<? extends Player> strategy(String name) {
+		if (name.equals("cpu"))
+			return PlayerCPU::new;
+		if (name.equals("track"))
+			return () -> {
+				PlayerCPU player = new PlayerCPU();
+				player.setTracking(true);
+				return player;
+			};
+		if (name.startsWith("cpu:")) {
+			String[] values = name.substring(4).split(",");
+			double[] weights = new double[values.length];
+			for (int i = 0; i < values.length; i++)
+				weights[i] = Double.parseDouble(values[i]);
+			new PlayerCPU(weights); // fail now on a wrong number
+			return () -> new PlayerCPU(weights);
+		}
+		if (name.startsWith("mcts:")) {
+			int playouts = Integer.parseInt(name.substring(5));
+			return () -> new PlayerMCTS(playouts, 0);
+		}
+		throw new IllegalArgumentException("No such strategy: " + name);
+	}
+
+	/**
+	 * Play a tournament between two CPU players and print the results.
+	 *
+	 * Arguments, all optional: number of matches, points limit, master
+	 * seed, number of threads and the strategies A and B (see
+	 * strategy()), both "cpu" by default, a directory to record the
+	 * games in ("-" for none) and the number of seats at each table.
+	 */
+	public static void main(String[] args) {
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int limit = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		long seed = args.length > 2 ? Long.parseLong(args[2])
+		                            : System.nanoTime();
+		int threads = args.length > 3
+		              ? Integer.parseInt(args[3])
+		              : Runtime.getRuntime().availableProcessors();
+
+		String a = args.length > 4 ? args[4] : "cpu";
+		String b = args.length > 5 ? args[5] : "cpu";
+
+		int seats = args.length > 7 ? Integer.parseInt(args[7]) : 2;
+
+		Tournament tournament = new Tournament(strategy(a), strategy(b),
+		                                       limit, seed, seats);
+		if (args.length > 6 && ! args[6].equals("-"))
+			tournament.setRecordDir(Path.of(args[6]));
+		long start = System.nanoTime();
+		Result result = tournament.run(matches, threads);
+		double secs = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("A: %s, B: %s, seats: %d%n", a, b, seats);
+		System.out.printf("Seed: %d, threads: %d, points limit: %d%n",
+		                  seed, threads, limit);
+		System.out.print(result);
+		System.out.printf("%.0f matches per second%n", matches / secs);
+		if (Metrics.ENABLED)
+			System.out.print(Metrics.summary());
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package agonia;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+
+/**
+ * Tunes the weights of PlayerCPU by playing headless matches.
+ *
+ * The search is the cross-entropy method, a simpler relative of CMA-ES
+ * that keeps one deviation per weight instead of a full covariance
+ * matrix: each generation samples candidates around the mean, plays each
+ * of them against the CPU of the rules as written, and moves the mean and
+ * the deviations to those of the best quarter.
+ *
+ * All the candidates of a generation play the same matches, dealt from the
+ * same seeds, so they are ranked on their play and not on their luck. A
+ * new set of seeds is drawn every generation, to not overfit a single
+ * one. The matches of a candidate are played in parallel by a Tournament.
+ */
+public class WeightSearch {
+	private int population; // candidates per generation
+	private int matches;    // matches per candidate
+	private int threads;
+	private long masterSeed;
+	private SplittableRandom rnd; // samples the candidates
+	private double[] mean;
+	private double[] sigma;
+
+	//------------------Constant definitions----------------------
+	static final double ELITE = 0.25;  // share of candidates kept
+	static final double SMOOTHING = 0.7; // weight of the new mean and sigma
+	static final double MIN_SIGMA = 0.5;
+	static final int POINTS_LIMIT = 100;
+
+	//--------------------Constructor-----------------------------
+
+	/**
+	 * @param start weights to start from
+	 * @param sigma deviation of the first generation, for every weight
+	 * @param population candidates per generation
+	 * @param matches matches per candidate
+	 * @param threads number of threads to play on
+	 * @param masterSeed seed of all the matches and candidates
+	 */
+	public WeightSearch(double[] start, double sigma, int population,
+	                    int matches, int threads, long masterSeed) {
+		this.mean = start.clone();
+		this.sigma = new double[start.length];
+		Arrays.fill(this.sigma, sigma);
+		this.population = population;
+		this.matches = matches;
+		this.threads = threads;
+		this.masterSeed = masterSeed;
+		this.rnd = new SplittableRandom(masterSeed);
+	}
+
+	//-----------------Non-static methods-------------------------
+
+	public double[] mean() { return mean.clone(); }
+
+	/**
+	 * Sample, play and select one generation.
+	 *
+	 * @param generation number of the generation, picks its seeds
+	 * @return share of matches won by the best candidate
+	 */
+	public double step(int generation) {
+		double[][] candidates = new double[population][];
+		double[] fitness = new double[population];
+		Integer[] order = new Integer[population];
+		long seed = GameEngine.seedOf(masterSeed, generation);
+
+		for (int i = 0; i < population; i++) {
+			candidates[i] = new double[mean.length];
+			for (int j = 0; j < mean.length; j++)
+				candidates[i][j] = mean[j] + sigma[j] * gaussian();
+			fitness[i] = evaluate(candidates[i], matches, seed);
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(fitness[b], fitness[a]));
+
+		int elite = Math.max(2, (int) (population * ELITE));
+		for (int j = 0; j < mean.length; j++) {
+			double m = 0;
+			for (int i = 0; i < elite; i++)
+				m += candidates[order[i]][j];
+			m /= elite;
+			double v = 0;
+			for (int i = 0; i < elite; i++) {
+				double d = candidates[order[i]][j] - m;
+				v += d * d;
+			}
+			double s = Math.sqrt(v / elite);
+
+			mean[j] = SMOOTHING * m + (1 - SMOOTHING) * mean[j];
+			sigma[j] = Math.max(MIN_SIGMA, SMOOTHING * s
+			                               + (1 - SMOOTHING) * sigma[j]);
+		}
+		return fitness[order[0]];
+	}
+
+	/**
+	 * Play a CPU with weights against the CPU of the rules as written.
+	 *
+	 * @param weights weights of the CPU
+	 * @param matches number of matches
+	 * @param seed seed of the matches
+	 * @return share of matches won by the CPU with weights
+	 */
+	double evaluate(double[] weights, int matches, long seed) {
+		Tournament tournament = new Tournament(
+		        () -> new PlayerCPU(weights), PlayerCPU::new,
+		        POINTS_LIMIT, seed);
+		Tournament.Result result = tournament.run(matches, threads);
+		return (double) result.winsA() / result.matches();
+	}
+
+	/**
+	 * Return a standard normal sample (Box-Muller).
+	 */
+	private double gaussian() {
+		double u = 1 - rnd.nextDouble(); // never 0
+		double v = rnd.nextDouble();
+		return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Format weights the way Tournament.strategy() reads them, with a dot
+	 * for the decimal point whatever the locale.
+	 *
+	 * @param weights the weights
+	 * @return "cpu:" and the weights separated by commas
+	 */
+	static String strategyName(double[] weights) {
+		StringBuilder name = new StringBuilder("cpu:");
+		for (int i = 0; i < weights.length; i++) {
+			if (i > 0)
+				name.append(',');
+			name.append(String.format(Locale.ROOT, "%.2f", weights[i]));
+		}
+		return name.toString();
+	}
+
+	/**
+	 * Run a search and print its progress and the weights found.
+	 *
+	 * Arguments, all optional: number of generations, candidates per
+	 * generation, matches per candidate, master seed, number of threads
+	 * and the deviation of the first generation.
+	 */
+	public static void main(String[] args) {
+		int generations = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+		int population = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int matches = args.length > 2 ? Integer.parseInt(args[2]) : 4000;
+		long seed = args.length > 3 ? Long.parseLong(args[3])
+		                            : System.nanoTime();
+		int threads = args.length > 4
+		              ? Integer.parseInt(args[4])
+		              : Runtime.getRuntime().availableProcessors();
+		double sigma = args.length > 5 ? Double.parseDouble(args[5]) : 20;
+
+		WeightSearch search = new WeightSearch(PlayerCPU.DEFAULT_WEIGHTS,
+		        sigma, population, matches, threads, seed);
+		System.out.printf("Seed: %d, threads: %d%n", seed, threads);
+		long start = System.nanoTime();
+		for (int g = 0; g < generations; g++) {
+			double best = search.step(g);
+			System.out.printf("Generation %d: best %.2f%%, %.0fs%n",
+			                  g + 1, 100 * best,
+			                  (System.nanoTime() - start) / 1e9);
+		}
+
+		// judge the result on matches no candidate has played
+		double[] weights = search.mean();
+		double wins = search.evaluate(weights, 10 * matches,
+		                              GameEngine.seedOf(seed, -1));
+		for (int i = 0; i < weights.length; i++)
+			System.out.printf("%-14s%8.2f%n", PlayerCPU.WEIGHT_NAMES[i],
+			                  weights[i]);
+		System.out.printf("Wins against cpu: %.2f%% of %d matches%n",
+		                  100 * wins, 10 * matches);
+		System.out.println(strategyName(weights));
+	}
+}
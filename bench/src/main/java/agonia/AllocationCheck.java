@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+import com.sun.management.ThreadMXBean;
+
+
+/**
+ * Fails if the turns of CPU players allocate.
+ *
+ * Deals rounds between two CPU players on a headless table and plays them
+ * out turn by turn, measuring the bytes the thread allocates inside the
+ * turns only (dealing a round allocates its deck and is left out). The
+ * first rounds warm the JIT up and are not measured.
+ *
+ * Run it with: java -cp target/benchmarks.jar agonia.AllocationCheck
+ */
+public class AllocationCheck {
+	static final int WARMUP_ROUNDS = 50000;
+	static final int ROUNDS = 20000;
+	static final int MAX_TURNS = 1000; // per round
+
+	/**
+	 * Play rounds and return the bytes allocated by their turns.
+	 *
+	 * @param a first player
+	 * @param b second player
+	 * @param rounds number of rounds
+	 * @param seed seed of the first round's deck
+	 * @return bytes allocated, and the number of turns in turns[0]
+	 */
+	static long playRounds(PlayerCPU a, PlayerCPU b, int rounds,
+	                       long seed, long[] turns) {
+		ThreadMXBean mx = (ThreadMXBean)
+		                  ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+		long bytes = 0;
+		a.next = b;
+		b.next = a;
+
+		for (int i = 0; i < rounds; i++) {
+			Deck deck = new Deck(Renderer.NONE,
+			                     new SplittableRandom(seed + i));
+			deck.shuffle();
+			deck.dealCards(a, b);
+
+			long start = mx.getThreadAllocatedBytes(tid);
+			Player cp = a.playFirstCard(deck, b);
+			for (int t = 0; t < MAX_TURNS; t++) {
+				Player next = cp.play(deck, cp.next);
+				turns[0]++;
+				if (cp.cards.isEmpty() || next.cards.isEmpty())
+					break;
+				cp = next;
+			}
+			bytes += mx.getThreadAllocatedBytes(tid) - start;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Check a pair of players and print the result.
+	 *
+	 * @return true if their turns allocated nothing
+	 */
+	static boolean check(String what, PlayerCPU a, PlayerCPU b) {
+		long[] turns = {0};
+		playRounds(a, b, WARMUP_ROUNDS, 0, turns);
+		turns[0] = 0;
+		long bytes = playRounds(a, b, ROUNDS, WARMUP_ROUNDS, turns);
+
+		System.out.printf("%-10s%d turns, %d bytes allocated%n",
+		                  what, turns[0], bytes);
+		return bytes == 0;
+	}
+
+	private static PlayerCPU tracking() {
+		PlayerCPU player = new PlayerCPU();
+		player.setTracking(true);
+		return player;
+	}
+
+	public static void main(String[] args) {
+		boolean ok = check("cpu", new PlayerCPU(), new PlayerCPU());
+		ok &= check("weighted",
+		            new PlayerCPU(PlayerCPU.DEFAULT_WEIGHTS),
+		            new PlayerCPU(PlayerCPU.DEFAULT_WEIGHTS));
+		ok &= check("tracking", tracking(), tracking());
+		if (! ok) {
+			System.out.println("CPU turns allocate");
+			System.exit(1);
+		}
+	}
+}
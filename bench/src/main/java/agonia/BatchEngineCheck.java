@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+
+/**
+ * Fails if a BatchEngine match ends differently from the GameEngine match
+ * of the same seed.
+ *
+ * BatchEngine replays the rules, PlayerCPU's decisions and the shuffles
+ * of SplittableRandom on its own arrays, so any drift from GameEngine
+ * (eg. in the generator's increment or its bounded nextInt) shows up as
+ * matches with other rounds, points or winners. Tables of 2, 3 and 8
+ * seats are checked, half of the matches played by run() and half step
+ * by step.
+ *
+ * Run it with: java -cp target/benchmarks.jar agonia.BatchEngineCheck
+ */
+public class BatchEngineCheck {
+	static final int MATCHES = 3000; // per table size
+	static final int POINTS_LIMIT = 100;
+	static final long SEED = 42;
+
+	/**
+	 * Play the matches of a table size both ways and compare them.
+	 *
+	 * @param seats players at each table
+	 * @param stepped true to play the batch by step(), else by run()
+	 * @return number of matches that ended differently
+	 */
+	static int check(int seats, boolean stepped) {
+		BatchEngine batch = new BatchEngine(MATCHES, seats, POINTS_LIMIT);
+		for (int i = 0; i < MATCHES; i++)
+			batch.reset(i, GameEngine.seedOf(SEED, i));
+		if (stepped)
+			while (batch.step() > 0)
+				;
+		else
+			batch.run();
+
+		int wrong = 0;
+		for (int i = 0; i < MATCHES; i++) {
+			Player[] players = new Player[seats];
+			for (int s = 0; s < seats; s++)
+				players[s] = new PlayerCPU();
+			GameEngine engine = new GameEngine(players, POINTS_LIMIT,
+			                                   GameEngine.seedOf(SEED, i));
+			Player winner = engine.playMatch();
+
+			boolean same = engine.round() == batch.round(i)
+			               && winner.seat == batch.winner(i);
+			for (int s = 0; s < seats; s++)
+				same &= players[s].points == batch.points(i, s);
+			if (! same)
+				wrong++;
+		}
+		System.out.printf("%d seats, %s: %d of %d matches differ%n", seats,
+		                  stepped ? "step()" : "run()", wrong, MATCHES);
+		return wrong;
+	}
+
+	public static void main(String[] args) {
+		int wrong = 0;
+		for (int seats : new int[] {2, 3, GameEngine.MAX_PLAYERS}) {
+			wrong += check(seats, false);
+			wrong += check(seats, true);
+		}
+		if (wrong > 0) {
+			System.out.println("BatchEngine drifts from GameEngine");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Helpers of Agonia working on a hand: walking it in order, lookup by
+ * name, dominant suit and points.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CardsBenchmark {
+	@Param({"7", "15"})
+	int handSize;
+
+	private Hand hand;
+	private String lastName;  // name of the last card of the hand
+
+	@Setup
+	public void setup() {
+		Deck deck = new Deck(Renderer.NONE, new SplittableRandom(1));
+		deck.shuffle();
+
+		hand = new Hand();
+		for (int i = 0; i < handSize; i++)
+			hand.add(deck.dealOneCard());
+		lastName = hand.highest(hand.mask()).longdesc().toLowerCase();
+	}
+
+	/**
+	 * Visits the cards of the hand sorted by suit and num, which used to
+	 * take an Agonia.sortCards() call.
+	 */
+	@Benchmark
+	public int sortedWalk() {
+		int sum = 0;
+		for (long i = hand.mask(); i != 0; i &= i - 1)
+			sum += Card.of(Long.numberOfTrailingZeros(i)).value();
+		return sum;
+	}
+
+	@Benchmark
+	public Card findCard() {
+		return Agonia.findCard(lastName, hand);
+	}
+
+	@Benchmark
+	public Card.Suit findDominantSuit() {
+		return Agonia.findDominantSuit(hand.mask());
+	}
+
+	/**
+	 * The same read from the counts the hand keeps.
+	 */
+	@Benchmark
+	public Card.Suit findDominantSuitCounted() {
+		return Agonia.findDominantSuit(hand);
+	}
+
+	@Benchmark
+	public int value() {
+		return Hand.value(hand.mask());
+	}
+
+	@Benchmark
+	public int valueCounted() {
+		return hand.value();
+	}
+}
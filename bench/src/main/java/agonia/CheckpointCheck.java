@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+/**
+ * Fails if a saved game of the console comes back with a player in the
+ * wrong seat.
+ *
+ * For every table size and every seat of the human, gives each player a
+ * hand and points of his own, saves the game with Agonia.saveGame(),
+ * loads it back with Agonia.loadGame() and compares seat by seat.
+ *
+ * Run it with: java -cp target/benchmarks.jar agonia.CheckpointCheck
+ */
+public class CheckpointCheck {
+	/**
+	 * Save and load a table with the human at a seat.
+	 *
+	 * @param file checkpoint file
+	 * @param seats players at the table
+	 * @param seat seat of the human
+	 * @return true if every seat came back as it was
+	 */
+	static boolean check(Path file, int seats, int seat) {
+		PlayerHuman human = new PlayerHuman();
+		Player[] players = new Player[seats];
+		for (int i = 0; i < seats; i++)
+			players[i] = i == seat ? human : new PlayerCPU();
+		GameEngine engine = new GameEngine(players, 1000, seat);
+		for (int i = 0; i < seats; i++) {
+			players[i].cards.set(1L << 4 * i | 1L << 4 * i + 1);
+			players[i].points = 10 * i + 1;
+		}
+		Agonia.saveGame(file, engine, human);
+
+		PlayerHuman loaded = new PlayerHuman();
+		GameEngine restored = Agonia.loadGame(file, loaded);
+		boolean ok = restored.player(seat) == loaded;
+		for (int i = 0; i < seats; i++) {
+			Player player = restored.player(i);
+			ok &= player.cards.mask() == players[i].cards.mask()
+			      && player.points == players[i].points
+			      && (player instanceof PlayerHuman) == (i == seat);
+		}
+		if (! ok)
+			System.out.printf("%d seats, human at seat %d: wrong seats%n",
+			                  seats, seat);
+		return ok;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path file = Files.createTempFile("agonia", ".sav");
+		boolean ok = true;
+		int tables = 0;
+		try {
+			for (int seats = GameEngine.MIN_PLAYERS;
+			     seats <= GameEngine.MAX_PLAYERS; seats++)
+				for (int seat = 0; seat < seats; seat++, tables++)
+					ok &= check(file, seats, seat);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+		System.out.printf("%d tables saved and loaded%n", tables);
+		if (! ok) {
+			System.out.println("Saved games come back in other seats");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Dealing and reshuffling.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeckBenchmark {
+	private Deck deck;
+	private PlayerCPU player1;
+	private PlayerCPU player2;
+
+	@Setup
+	public void setup() {
+		deck = new Deck(Renderer.NONE, new SplittableRandom(1));
+		player1 = new PlayerCPU();
+		player2 = new PlayerCPU();
+		deck.shuffle();
+		deck.dealCards(player1, player2);
+	}
+
+	/**
+	 * Deals a card and plays it, so the discard pile fills up and the
+	 * deck is reshuffled from it whenever it runs out.
+	 */
+	@Benchmark
+	public Card dealOneCard() {
+		Card card = deck.dealOneCard();
+		deck.setDowncard(card);
+		return card;
+	}
+
+	@Benchmark
+	public Deck reshuffle() {
+		deck.reshuffle(player1.cards, player2.cards);
+		return deck;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.util.SplittableRandom;
+
+
+/**
+ * Fails if GameState.unmake() does not bring a state back to what it was
+ * before make().
+ *
+ * Deals rounds, determinizes them like PlayerMCTS does and walks them at
+ * random: mostly making decisions (legal ones, half of them PlayerCPU's),
+ * sometimes unmaking the last one, and unmaking all of them at the end.
+ * A copy taken before each make() is compared with the state after the
+ * matching unmake(). Long walks run the pile out, so reshuffles are
+ * unmade too.
+ *
+ * Run it with: java -cp target/benchmarks.jar agonia.GameStateCheck
+ */
+public class GameStateCheck {
+	static final int ROUNDS = 20000;
+	static final int STEPS = 400; // makes and unmakes per round
+
+	public static void main(String[] args) {
+		SplittableRandom rnd = new SplittableRandom(1);
+		GameState known = new GameState(rnd);
+		GameState state = new GameState(rnd);
+		GameState[] before = new GameState[GameState.MAX_DEPTH];
+		for (int i = 0; i < before.length; i++)
+			before[i] = new GameState(rnd);
+		long made = 0, reshuffles = 0, wrong = 0;
+
+		for (int r = 0; r < ROUNDS; r++) {
+			Deck deck = new Deck(Renderer.NONE, new SplittableRandom(r));
+			PlayerCPU me = new PlayerCPU(), opponent = new PlayerCPU();
+			deck.shuffle();
+			deck.dealCards(me, opponent);
+			known.observe(deck, me, opponent);
+			state.determinize(known, opponent.cards.size(), deck.size());
+
+			for (int i = 0; i < STEPS; i++) {
+				int depth = state.depth();
+				if (! state.isOver() && depth < GameState.MAX_DEPTH
+				&& (depth == 0 || rnd.nextInt(4) != 0)) {
+					before[depth].copy(state);
+					int pile = state.pileSize();
+					state.make(move(state, rnd));
+					made++;
+					if (state.pileSize() > pile)
+						reshuffles++;
+				} else if (depth > 0) {
+					state.unmake();
+					if (! state.sameAs(before[depth - 1]))
+						wrong++;
+				}
+			}
+			while (state.depth() > 0) {
+				state.unmake();
+				if (! state.sameAs(before[state.depth()]))
+					wrong++;
+			}
+		}
+
+		System.out.printf("%d decisions made, %d reshuffles, " +
+		                  "%d unmade wrong%n", made, reshuffles, wrong);
+		if (wrong > 0) {
+			System.out.println("unmake() does not restore the state");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Pick PlayerCPU's decision or a random legal one.
+	 */
+	private static int move(GameState state, SplittableRandom rnd) {
+		if (rnd.nextBoolean())
+			return state.policy();
+		long legal = state.legal();
+		for (int n = rnd.nextInt(Long.bitCount(legal)); n > 0; n--)
+			legal &= legal - 1;
+		return Long.numberOfTrailingZeros(legal);
+	}
+}
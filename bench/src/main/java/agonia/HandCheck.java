@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.util.SplittableRandom;
+
+
+/**
+ * Fails if the counts a Hand keeps drift from its cards.
+ *
+ * Adds, removes, sets and clears cards of a hand at random and after
+ * every change recounts the mask: the cards of each suit and of each num,
+ * the points value and the dominant suit.
+ *
+ * Run it with: java -cp target/benchmarks.jar agonia.HandCheck
+ */
+public class HandCheck {
+	static final int CHANGES = 5000000;
+
+	/**
+	 * Check the counts of a hand against its mask.
+	 *
+	 * @return true if every count matches
+	 */
+	static boolean counted(Hand hand) {
+		long cards = hand.mask();
+		boolean ok = hand.value() == Hand.value(cards)
+		             && hand.dominantSuit() == Hand.dominantSuit(cards)
+		             && hand.size() == Long.bitCount(cards);
+		for (int suit = 1; suit <= Deck.NUM_SUITS; suit++)
+			ok &= hand.suitCount(suit)
+			      == Long.bitCount(cards & Hand.suitMask(suit));
+		for (int num = 1; num <= Deck.NUM_NUMS; num++)
+			ok &= hand.rankCount(num)
+			      == Long.bitCount(cards & Hand.rankMask(num));
+		return ok;
+	}
+
+	public static void main(String[] args) {
+		SplittableRandom rnd = new SplittableRandom(1);
+		Hand hand = new Hand();
+		long wrong = 0;
+
+		for (int i = 0; i < CHANGES; i++) {
+			Card card = Card.of(rnd.nextInt(Deck.NUM_CARDS));
+			int change = rnd.nextInt(100);
+			if (change < 45)
+				hand.add(card);
+			else if (change < 90)
+				hand.remove(card);
+			else if (change < 95)
+				hand.set(rnd.nextLong() & Hand.ALL_CARDS);
+			else
+				hand.clear();
+			if (! counted(hand))
+				wrong++;
+		}
+
+		System.out.printf("%d changes, %d miscounted%n", CHANGES, wrong);
+		if (wrong > 0) {
+			System.out.println("Hand counts drift from its cards");
+			System.exit(1);
+		}
+	}
+}
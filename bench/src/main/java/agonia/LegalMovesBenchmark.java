@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * The playable cards of a batch of games, with the Vector API kernel of
+ * LegalMoves and with its scalar loop. Forked with the incubator module,
+ * so both are measured in the same JVM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class LegalMovesBenchmark {
+	@Param({"256", "4096"})
+	int games;
+
+	private long[] hands;
+	private byte[] downcards;
+	private byte[] downsuits;
+	private long[] playables;
+	private LegalMovesVector kernel = new LegalMovesVector();
+
+	@Setup
+	public void setup() {
+		SplittableRandom rnd = new SplittableRandom(1);
+		hands = new long[games];
+		downcards = new byte[games];
+		downsuits = new byte[games];
+		playables = new long[games];
+		for (int i = 0; i < games; i++) {
+			hands[i] = rnd.nextLong() & Hand.ALL_CARDS;
+			downcards[i] = (byte) rnd.nextInt(Deck.NUM_CARDS);
+			downsuits[i] = (byte) (1 + rnd.nextInt(Deck.NUM_SUITS));
+		}
+	}
+
+	@Benchmark
+	public long[] vector() {
+		kernel.playable(hands, downcards, downsuits, playables, 0, games);
+		return playables;
+	}
+
+	@Benchmark
+	public long[] scalar() {
+		LegalMoves.scalar(hands, downcards, downsuits, playables,
+		                  0, games);
+		return playables;
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+
+/**
+ * Fails if the Vector API kernel of LegalMoves finds other cards than its
+ * scalar loop, or writes outside or skips part of the range it is given.
+ *
+ * Fills arrays with random hands, every down card and every suit id
+ * (0 included) and compares both over ranges that start and end off the
+ * vector boundaries. Needs the incubator module:
+ *
+ * java --add-modules jdk.incubator.vector -cp target/benchmarks.jar
+ *      agonia.LegalMovesCheck
+ */
+public class LegalMovesCheck {
+	static final int GAMES = 100003;
+	static final int RANGES = 200;
+	static final long UNWRITTEN = -1; // no mask of cards has bit 63
+
+	public static void main(String[] args) {
+		if (! LegalMoves.VECTORIZED) {
+			System.out.println("Run with --add-modules " +
+			                   "jdk.incubator.vector");
+			System.exit(1);
+		}
+		SplittableRandom rnd = new SplittableRandom(1);
+		long[] hands = new long[GAMES];
+		byte[] downcards = new byte[GAMES];
+		byte[] downsuits = new byte[GAMES];
+		long[] vector = new long[GAMES];
+		long[] scalar = new long[GAMES];
+		for (int i = 0; i < GAMES; i++) {
+			hands[i] = rnd.nextLong() & Hand.ALL_CARDS;
+			downcards[i] = (byte) rnd.nextInt(Deck.NUM_CARDS);
+			downsuits[i] = (byte) rnd.nextInt(Deck.NUM_SUITS + 1);
+		}
+
+		long wrong = 0;
+		for (int r = 0; r < RANGES; r++) {
+			int from = rnd.nextInt(64);
+			int to = GAMES - rnd.nextInt(64);
+			Arrays.fill(vector, UNWRITTEN);
+			LegalMoves.playable(hands, downcards, downsuits, vector,
+			                    from, to);
+			LegalMoves.scalar(hands, downcards, downsuits, scalar,
+			                  from, to);
+			for (int i = 0; i < GAMES; i++)
+				if (vector[i] != (i < from || i >= to
+				                  ? UNWRITTEN : scalar[i]))
+					wrong++;
+		}
+
+		System.out.printf("%d ranges of about %d games, %d differ%n",
+		                  RANGES, GAMES, wrong);
+		if (wrong > 0) {
+			System.out.println("The vector kernel differs from the loop");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Decisions of the CPU players.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayerBenchmark {
+	private Deck deck;
+	private PlayerCPU cpu;
+	private PlayerCPU opponent;
+	private GameState known;
+	private GameState sample;
+
+	/**
+	 * Deal a round and put down a card the CPU can follow, so that
+	 * chooseCard() decides without pulling and leaves the round as is.
+	 */
+	@Setup
+	public void setup() {
+		deck = new Deck(Renderer.NONE, new SplittableRandom(1));
+		cpu = new PlayerCPU();
+		opponent = new PlayerCPU();
+		deck.shuffle();
+		deck.dealCards(cpu, opponent);
+
+		Card follow = cpu.cards.highest(cpu.cards.mask()
+		                                & ~Hand.rankMask(1));
+		for (int n = 2; n <= Deck.NUM_NUMS; n++) {
+			Card card = Card.of(n, follow.suit());
+			if (card != follow && ! cpu.cards.contains(card)
+			&& ! opponent.cards.contains(card)) {
+				deck.setDowncard(card);
+				break;
+			}
+		}
+
+		SplittableRandom rnd = new SplittableRandom(2);
+		known = new GameState(rnd);
+		sample = new GameState(rnd);
+		known.observe(deck, cpu, opponent);
+		sample.determinize(known, opponent.cards.size(), deck.size());
+	}
+
+	@Benchmark
+	public Card chooseCard() {
+		return cpu.chooseCard(deck, opponent);
+	}
+
+	/**
+	 * One determinization and playout of the round, the inner loop of
+	 * PlayerMCTS.
+	 */
+	@Benchmark
+	public int playout() {
+		sample.determinize(known, opponent.cards.size(), deck.size());
+		return sample.playout(PlayerMCTS.MAX_PLAYOUT_MOVES);
+	}
+
+	/**
+	 * One step of a tree search: decide on a state and take it back, with
+	 * make() and unmake() ...
+	 */
+	@Benchmark
+	public int makeUnmake() {
+		sample.make(sample.policy());
+		int turn = sample.turn();
+		sample.unmake();
+		return turn;
+	}
+
+	/**
+	 * ... or by copying the state before every decision.
+	 */
+	@Benchmark
+	public int copyApply() {
+		known.copy(sample);
+		known.apply(known.policy());
+		return known.turn();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package agonia;
+
+import java.util.SplittableRandom;
+
+
+/**
+ * Fails if a CardTracker believes something false about the next player,
+ * or if tracking does not make PlayerCPU win more.
+ *
+ * Plays rounds between a tracking CPU and a plain one, who folds only
+ * when nothing in his hand can be played, and after every turn checks
+ * that no card in lacks is in his hand and that every card that may be
+ * left to deal is in pile. Then plays matches between the two, each
+ * starting half of them, and checks that the tracking CPU wins more than
+ * half.
+ *
+ * Run it with: java -cp target/benchmarks.jar agonia.TrackerCheck
+ */
+public class TrackerCheck {
+	static final int ROUNDS = 100000;
+	static final int MAX_TURNS = 1000; // per round
+	static final int MATCHES = 40000;
+	static final int POINTS_LIMIT = 100;
+
+	/**
+	 * Play rounds and count the turns after which the tracker was wrong.
+	 *
+	 * @param turns where to add the number of turns played
+	 * @return turns with a false belief
+	 */
+	static long wrongBeliefs(long[] turns) {
+		long wrong = 0;
+		for (int r = 0; r < ROUNDS; r++) {
+			PlayerCPU tracking = new PlayerCPU(), plain = new PlayerCPU();
+			tracking.setTracking(true);
+			tracking.next = plain;
+			plain.next = tracking;
+			Deck deck = new Deck(Renderer.NONE, new SplittableRandom(r));
+			deck.shuffle();
+			deck.dealCards(tracking, plain);
+			CardTracker tracker = tracking.tracker;
+			tracker.track(deck);
+
+			Player cp = (r & 1) == 0 ? tracking.playFirstCard(deck, plain)
+			                         : plain.playFirstCard(deck, tracking);
+			for (int t = 0; t < MAX_TURNS; t++) {
+				Player next = cp.play(deck, cp.next);
+				turns[0]++;
+				long hand = plain.cards.mask();
+				long pile = tracker.unseen() & ~hand;
+				if ((tracker.lacks() & hand) != 0
+				|| (pile & ~tracker.pile()) != 0)
+					wrong++;
+				if (cp.cards.isEmpty() || next.cards.isEmpty())
+					break;
+				cp = next;
+			}
+		}
+		return wrong;
+	}
+
+	/**
+	 * Play matches between a tracking and a plain CPU.
+	 *
+	 * @return matches won by the tracking CPU
+	 */
+	static int trackingWins() {
+		int wins = 0;
+		for (int i = 0; i < MATCHES; i++) {
+			PlayerCPU tracking = new PlayerCPU(), plain = new PlayerCPU();
+			tracking.setTracking(true);
+			GameEngine engine = (i & 1) == 0
+			        ? new GameEngine(tracking, plain, POINTS_LIMIT,
+			                         GameEngine.seedOf(1, i))
+			        : new GameEngine(plain, tracking, POINTS_LIMIT,
+			                         GameEngine.seedOf(1, i));
+			if (engine.playMatch() == tracking)
+				wins++;
+		}
+		return wins;
+	}
+
+	public static void main(String[] args) {
+		long[] turns = {0};
+		long wrong = wrongBeliefs(turns);
+		System.out.printf("%d turns, %d with a false belief%n",
+		                  turns[0], wrong);
+		int wins = trackingWins();
+		System.out.printf("Tracking CPU won %d of %d matches (%.2f%%)%n",
+		                  wins, MATCHES, 100.0 * wins / MATCHES);
+
+		if (wrong > 0) {
+			System.out.println("CardTracker believes false things");
+			System.exit(1);
+		}
+		if (2 * wins <= MATCHES) {
+			System.out.println("Tracking does not win more");
+			System.exit(1);
+		}
+	}
+}
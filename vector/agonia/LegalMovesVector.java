@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Ilias Stamatis <stamatis.iliass@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package agonia;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * LegalMoves.playable() with the Vector API, for as many games per
+ * instruction as the widest vector of longs of the machine holds.
+ *
+ * The down cards and suits are read as bytes, one byte per long lane but
+ * never fewer than 8 games at a time, and widened to longs. Each lane then builds the mask of the cards that can
+ * be played without a lookup or a division: the bit of the down card is
+ * folded onto the first suit to find its num and spread again over all
+ * suits, and the suit must be played is shifted into place.
+ *
+ * Kept apart from the other sources, as it needs the incubating
+ * jdk.incubator.vector module to compile: `make vector' builds it, and
+ * LegalMoves loads it when the module is present at run time.
+ */
+final class LegalMovesVector implements LegalMoves.Kernel {
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+	// as many bytes as long lanes, 64 bits being the narrowest shape
+	private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(
+	        byte.class, VectorShape.forBitSize(
+	                Math.max(64, LONGS.length() * Byte.SIZE)));
+	// long vectors the bytes of a round of the loop widen to
+	private static final int PARTS = BYTES.length() / LONGS.length();
+
+	//-----------------Non-static methods-------------------------
+
+	/**
+	 * See LegalMoves.playable().
+	 *
+	 * @return nothing
+	 */
+	public void playable(long[] hands, byte[] downcards, byte[] downsuits,
+	                     long[] dst, int from, int to) {
+		int g = from;
+		for (int end = from + BYTES.loopBound(to - from); g < end;
+		     g += BYTES.length()) {
+			ByteVector down = ByteVector.fromArray(BYTES, downcards, g);
+			ByteVector suit = ByteVector.fromArray(BYTES, downsuits, g);
+			for (int p = 0; p < PARTS; p++) {
+				int i = g + p * LONGS.length();
+				LongVector d = (LongVector) down.convertShape(
+				        VectorOperators.B2L, LONGS, p);
+				LongVector s = (LongVector) suit.convertShape(
+				        VectorOperators.B2L, LONGS, p);
+				LongVector legal = ranks(d).or(suits(s))
+				                           .or(Hand.rankMask(1));
+				LongVector.fromArray(LONGS, hands, i).and(legal)
+				          .intoArray(dst, i);
+			}
+		}
+		LegalMoves.scalar(hands, downcards, downsuits, dst, g, to);
+	}
+
+	//--------------------Static methods--------------------------
+
+	/**
+	 * Hand.rankMask(Hand.numOf(downcard)) in each lane.
+	 *
+	 * @param downcard index of the down card in each lane
+	 * @return mask of the cards with the num of the down card
+	 */
+	private static LongVector ranks(LongVector downcard) {
+		LongVector bit = LongVector.broadcast(LONGS, 1)
+		                           .lanewise(VectorOperators.LSHL, downcard);
+		LongVector num = bit.or(bit.lanewise(VectorOperators.LSHR, 13))
+		                    .or(bit.lanewise(VectorOperators.LSHR, 26))
+		                    .or(bit.lanewise(VectorOperators.LSHR, 39))
+		                    .and(Hand.SUIT_BITS);
+		return num.or(num.lanewise(VectorOperators.LSHL, 13))
+		          .or(num.lanewise(VectorOperators.LSHL, 26))
+		          .or(num.lanewise(VectorOperators.LSHL, 39));
+	}
+
+	/**
+	 * Hand.suitMask(downsuit) in each lane, empty for suit 0.
+	 *
+	 * @param downsuit id of the suit must be played in each lane
+	 * @return mask of the cards of the suit
+	 */
+	private static LongVector suits(LongVector downsuit) {
+		LongVector shift = downsuit.sub(1).mul(Deck.NUM_NUMS);
+		return LongVector.broadcast(LONGS, Hand.SUIT_BITS)
+		                 .lanewise(VectorOperators.LSHL, shift)
+		                 .blend(0, downsuit.eq(0));
+	}
+}